@@ -0,0 +1,56 @@
+package storeapp.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of DataAdapter: a product lookup served by the product cache, the same lookup going to the database,
+ * and loading a stored order with its lines in one query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataAdapterBenchmark {
+
+    @Param({"10000"})
+    public int products;
+
+    @Param({"10"})
+    public int storedOrderLines;
+
+    private EmbeddedStore store;
+    private Object dataAdapter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        store = new EmbeddedStore(products, storedOrderLines);
+        dataAdapter = store.dataAdapter();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    // 1,000 hot products, well inside the cache
+    @Benchmark
+    public Object loadProductCached() {
+        return StoreApp.loadProduct(dataAdapter, 1 + ThreadLocalRandom.current().nextInt(1000));
+    }
+
+    @Benchmark
+    public Object loadProductFromDatabase() {
+        StoreApp.clearProductCache(dataAdapter);
+        return StoreApp.loadProduct(dataAdapter, 1 + ThreadLocalRandom.current().nextInt(products));
+    }
+
+    @Benchmark
+    public Object loadOrder() {
+        return StoreApp.loadOrder(dataAdapter, store.storedOrderID());
+    }
+}
@@ -0,0 +1,178 @@
+package storeapp.bench;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory H2 database in MySQL compatibility mode, standing in for the storeapp MySQL server so the
+ * benchmarks run anywhere without setup. It has the same tables as the migrated MySQL schema, users with a
+ * hashed password, a catalog of products (with effectively unlimited stock unless given) and one stored order.
+ * Numbers measure the application's own overhead (pooling, statement caching, mapping, batching); absolute
+ * latencies against a networked MySQL server will be higher.
+ */
+final class EmbeddedStore implements AutoCloseable {
+
+    static final String USERNAME = "cashier";
+    static final String PASSWORD = "secret";
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final String url;
+    private final Connection keepAlive;        // an in-memory H2 database lives as long as one connection is open
+    private final AutoCloseable pool;
+    private final Object dataAdapter;
+
+    private int buyerID;
+    private int storedOrderID;
+
+    EmbeddedStore(int products, int storedOrderLines) throws SQLException {
+        this(products, storedOrderLines, 1e12, 1, 4, false);
+    }
+
+    // With countRoundTrips, the pool's connections go through RoundTripCounter
+    EmbeddedStore(int products, int storedOrderLines, boolean countRoundTrips) throws SQLException {
+        this(products, storedOrderLines, 1e12, 1, 4, countRoundTrips);
+    }
+
+    /**
+     * users are named cashier, cashier2, cashier3, ... and all have PASSWORD. The stored order's lines do not
+     * take stock, so every product starts with exactly stockPerProduct.
+     */
+    EmbeddedStore(int products, int storedOrderLines, double stockPerProduct, int users, int maxConnections)
+            throws SQLException {
+        this(products, storedOrderLines, stockPerProduct, users, maxConnections, false);
+    }
+
+    private EmbeddedStore(int products, int storedOrderLines, double stockPerProduct, int users, int maxConnections,
+                          boolean countRoundTrips) throws SQLException {
+        url = "jdbc:h2:mem:storeapp" + DATABASES.incrementAndGet() + ";MODE=MySQL";
+        keepAlive = DriverManager.getConnection(url, "sa", "");
+        createSchema();
+        seed(products, storedOrderLines, stockPerProduct, users);
+        pool = StoreApp.newPool(countRoundTrips ? RoundTripCounter.wrap(url) : url, "sa", "",
+                Math.min(2, maxConnections), maxConnections, 5000);
+        dataAdapter = StoreApp.newDataAdapter(pool);
+    }
+
+    static String username(int user) {
+        return user == 1 ? USERNAME : USERNAME + user;
+    }
+
+    Object dataAdapter() {
+        return dataAdapter;
+    }
+
+    Object pool() {
+        return pool;
+    }
+
+    int buyerID() {
+        return buyerID;
+    }
+
+    int storedOrderID() {
+        return storedOrderID;
+    }
+
+    Connection newConnection() throws SQLException {
+        return DriverManager.getConnection(url, "sa", "");
+    }
+
+    // Removes orders written by saveOrder benchmarks so the tables do not grow across iterations
+    void deleteOrdersAfterStored() throws SQLException {
+        try (PreparedStatement lines = keepAlive.prepareStatement("DELETE FROM orderLine WHERE orderID > ?");
+             PreparedStatement orders = keepAlive.prepareStatement("DELETE FROM orders WHERE orderID > ?")) {
+            lines.setInt(1, storedOrderID);
+            lines.executeUpdate();
+            orders.setInt(1, storedOrderID);
+            orders.executeUpdate();
+        }
+    }
+
+    void execute(String sql) throws SQLException {
+        try (Statement s = keepAlive.createStatement()) {
+            s.execute(sql);
+        }
+    }
+
+    private void createSchema() throws SQLException {
+        execute("CREATE TABLE users (userID INT PRIMARY KEY AUTO_INCREMENT, username VARCHAR(50) NOT NULL UNIQUE, " +
+                "userPassword VARCHAR(255) NOT NULL, fullName VARCHAR(100) NOT NULL, isManager BOOLEAN DEFAULT FALSE)");
+        execute("CREATE TABLE products (productID INT PRIMARY KEY AUTO_INCREMENT, productName VARCHAR(100) NOT NULL, " +
+                "price DECIMAL(10, 2) NOT NULL, quantity DOUBLE NOT NULL, sellerID INT, " +
+                "FOREIGN KEY (sellerID) REFERENCES users(userID))");
+        execute("CREATE TABLE orders (orderID INT PRIMARY KEY AUTO_INCREMENT, buyerID INT, " +
+                "totalCost DECIMAL(10, 2) NOT NULL, totalTax DECIMAL(10, 2) NOT NULL, date TIMESTAMP(3), " +
+                "FOREIGN KEY (buyerID) REFERENCES users(userID))");
+        execute("CREATE TABLE orderLine (orderID INT, productID INT, quantity DOUBLE NOT NULL, cost DECIMAL(10, 2) NOT NULL, " +
+                "PRIMARY KEY (orderID, productID), FOREIGN KEY (orderID) REFERENCES orders(orderID), " +
+                "FOREIGN KEY (productID) REFERENCES products(productID))");
+        execute("CREATE TABLE orderJournalApplied (saleKey CHAR(36) NOT NULL PRIMARY KEY, orderID INT NOT NULL, " +
+                "appliedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), FOREIGN KEY (orderID) REFERENCES orders(orderID))");
+        execute("CREATE INDEX idx_products_seller ON products (sellerID)");
+        execute("CREATE INDEX idx_orderline_product ON orderLine (productID)");
+        execute("CREATE INDEX idx_orders_buyer_date ON orders (buyerID, date)");
+    }
+
+    private void seed(int products, int storedOrderLines, double stockPerProduct, int users) throws SQLException {
+        keepAlive.setAutoCommit(false);
+        // One hash for everybody; hashing is deliberately slow and the salt does not matter here
+        String hash = StoreApp.hashPassword(PASSWORD);
+        try (PreparedStatement ps = keepAlive.prepareStatement(
+                "INSERT INTO users (username, userPassword, fullName, isManager) VALUES (?, ?, ?, ?)")) {
+            for (int user = 1; user <= users; user++) {
+                ps.setString(1, username(user));
+                ps.setString(2, hash);
+                ps.setString(3, "Benchmark Cashier " + user);
+                ps.setBoolean(4, false);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        buyerID = 1;
+
+        try (PreparedStatement ps = keepAlive.prepareStatement(
+                "INSERT INTO products (productID, productName, price, quantity, sellerID) VALUES (?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= products; id++) {
+                ps.setInt(1, id);
+                ps.setString(2, "Benchmark product " + id);
+                ps.setBigDecimal(3, BigDecimal.valueOf(100 + id % 900, 2));
+                ps.setDouble(4, stockPerProduct);
+                ps.setInt(5, buyerID);
+                ps.addBatch();
+                if (id % 1000 == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+
+        storedOrderID = 1;
+        try (PreparedStatement order = keepAlive.prepareStatement(
+                "INSERT INTO orders (orderID, buyerID, totalCost, totalTax, date) VALUES (?, ?, ?, 0, CURRENT_TIMESTAMP)");
+             PreparedStatement line = keepAlive.prepareStatement(
+                "INSERT INTO orderLine (orderID, productID, quantity, cost) VALUES (?, ?, 1, 1.00)")) {
+            order.setInt(1, storedOrderID);
+            order.setInt(2, buyerID);
+            order.setBigDecimal(3, BigDecimal.valueOf(storedOrderLines * 100L, 2));
+            order.executeUpdate();
+            for (int p = 1; p <= storedOrderLines; p++) {
+                line.setInt(1, storedOrderID);
+                line.setInt(2, p);
+                line.addBatch();
+            }
+            line.executeBatch();
+        }
+        keepAlive.commit();
+        keepAlive.setAutoCommit(true);
+    }
+
+    @Override
+    public void close() throws Exception {
+        pool.close();
+        keepAlive.close();
+    }
+}
@@ -0,0 +1,310 @@
+package storeapp.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Many cashiers checking out at once against the embedded stand-in, for finding contention, oversells and
+ * latency cliffs before the real store does. Each cashier is a thread that logs in with DataAdapter.loadUser,
+ * builds baskets by looking products up with loadProduct (plus a few products it only browses) and pays with
+ * saveOrder. Products are picked with a Zipf distribution so a few hot SKUs take most of the traffic and sell out,
+ * and basket sizes are geometric around a mean, like real tills.
+ *
+ * Prints throughput every few seconds and, at the end, the application's own latency percentiles per operation,
+ * stock rejections, deadlocks and other errors. Then it checks every product against the order lines actually
+ * written: stock below zero, more sold than there was, or stock that does not add up is an oversell, and the run
+ * exits with status 1.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar storeapp.bench.LoadGenerator --cashiers 64 --seconds 600
+ *
+ * Options (defaults in brackets): --cashiers [32] --seconds [30] --products [10000] --stock [200] --users [50]
+ * --connections [16] --zipf [1.1] --basket-mean [4] --basket-max [30] --max-quantity [3] --browse [2]
+ * --orders-per-login [20] --think-ms [0] --report-seconds [5]
+ */
+public final class LoadGenerator {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("cashiers", "32");
+        DEFAULTS.put("seconds", "30");
+        DEFAULTS.put("products", "10000");
+        DEFAULTS.put("stock", "200");
+        DEFAULTS.put("users", "50");
+        DEFAULTS.put("connections", "16");
+        DEFAULTS.put("zipf", "1.1");
+        DEFAULTS.put("basket-mean", "4");
+        DEFAULTS.put("basket-max", "30");
+        DEFAULTS.put("max-quantity", "3");
+        DEFAULTS.put("browse", "2");
+        DEFAULTS.put("orders-per-login", "20");
+        DEFAULTS.put("think-ms", "0");
+        DEFAULTS.put("report-seconds", "5");
+    }
+
+    private final Map<String, String> options;
+    private final EmbeddedStore store;
+    private final Object dataAdapter;
+    private final double[] zipfCdf;
+    private final AtomicLongArray sold;        // units committed per product, as this generator saw it
+
+    private final LongAdder logins = new LongAdder();
+    private final LongAdder loginFailures = new LongAdder();
+    private final LongAdder browsed = new LongAdder();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder exceptions = new LongAdder();
+    private volatile boolean running = true;
+
+    private LoadGenerator(Map<String, String> options) throws SQLException {
+        this.options = options;
+        int products = intOption("products");
+        store = new EmbeddedStore(products, 0, intOption("stock"), intOption("users"), intOption("connections"));
+        dataAdapter = store.dataAdapter();
+        zipfCdf = zipfCdf(products, doubleOption("zipf"));
+        sold = new AtomicLongArray(products + 1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i].startsWith("--") ? args[i].substring(2) : null;
+            if (name == null || !DEFAULTS.containsKey(name) || i + 1 == args.length) {
+                System.out.println("Unknown or incomplete option: " + args[i]);
+                System.out.println("Options and defaults: " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(name, args[++i]);
+        }
+        System.out.println("Load generator: " + options);
+
+        LoadGenerator generator = new LoadGenerator(options);
+        boolean clean;
+        try {
+            generator.run();
+            clean = generator.report();
+        } finally {
+            generator.store.close();
+        }
+        System.exit(clean ? 0 : 1);
+    }
+
+    private void run() throws InterruptedException {
+        List<Thread> cashiers = new ArrayList<>();
+        for (int c = 0; c < intOption("cashiers"); c++) {
+            int user = 1 + c % intOption("users");
+            Thread t = new Thread(() -> cashier(user), "cashier-" + (c + 1));
+            t.setDaemon(true);
+            cashiers.add(t);
+        }
+        long start = System.nanoTime();
+        for (Thread t : cashiers) t.start();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long end = start + intOption("seconds") * 1_000_000_000L;
+        long period = intOption("report-seconds") * 1000L;
+        long lastCommitted = 0;
+        long lastTick = start;
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.max(1, Math.min(period, (end - System.nanoTime()) / 1_000_000)));
+            long now = System.nanoTime();
+            long c = committed.sum();
+            long[] deadlocked = threads.findDeadlockedThreads();
+            System.out.printf("%5.0fs  %8.1f orders/s  committed=%d rejected=%d deadlocks=%d errors=%d%s%n",
+                    (now - start) / 1e9, (c - lastCommitted) / ((now - lastTick) / 1e9), c,
+                    StoreApp.stockRejections(dataAdapter), StoreApp.deadlocks(dataAdapter), errors(),
+                    deadlocked == null ? "" : "  JVM DEADLOCK: " + deadlocked.length + " threads");
+            lastCommitted = c;
+            lastTick = now;
+        }
+
+        running = false;
+        for (Thread t : cashiers) {
+            t.join(30_000);
+            if (t.isAlive()) System.out.println(t.getName() + " did not finish its last checkout within 30s");
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nRan %.1f s: %.1f orders/s committed, %.1f checkouts/s attempted, %.1f product lookups/s%n",
+                seconds, committed.sum() / seconds, checkouts.sum() / seconds, browsed.sum() / seconds);
+    }
+
+    private void cashier(int user) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Object pricer = StoreApp.newPricer();
+        int ordersPerLogin = intOption("orders-per-login");
+        int basketMax = intOption("basket-max");
+        int maxQuantity = intOption("max-quantity");
+        int browse = intOption("browse");
+        long thinkMillis = intOption("think-ms");
+        double basketMean = doubleOption("basket-mean");
+        int[] ids = new int[basketMax];
+        int[] quantities = new int[basketMax];
+
+        int buyerID = -1;
+        int ordersSinceLogin = 0;
+        while (running) {
+            try {
+                if (buyerID < 0 || ordersSinceLogin >= ordersPerLogin) {
+                    logins.increment();
+                    Object u = StoreApp.loadUser(dataAdapter, EmbeddedStore.username(user), EmbeddedStore.PASSWORD);
+                    if (u == null) {
+                        loginFailures.increment();
+                        continue;
+                    }
+                    buyerID = StoreApp.userID(u);
+                    ordersSinceLogin = 0;
+                }
+
+                for (int i = 0; i < browse; i++) {
+                    StoreApp.loadProduct(dataAdapter, pickProduct(random));
+                    browsed.increment();
+                }
+
+                Object order = StoreApp.newOrder(buyerID);
+                int lines = basketSize(random, basketMean, basketMax);
+                for (int i = 0; i < lines; i++) {
+                    ids[i] = pickProduct(random);
+                    quantities[i] = 1 + random.nextInt(maxQuantity);
+                    Object product = StoreApp.loadProduct(dataAdapter, ids[i]);
+                    browsed.increment();
+                    if (product == null) throw new IllegalStateException("Product " + ids[i] + " not found");
+                    StoreApp.addLine(pricer, order, ids[i], StoreApp.price(product), quantities[i]);
+                }
+                if (thinkMillis > 0) Thread.sleep(thinkMillis);
+
+                checkouts.increment();
+                ordersSinceLogin++;
+                if (StoreApp.saveOrder(dataAdapter, order)) {
+                    committed.increment();
+                    for (int i = 0; i < lines; i++) sold.addAndGet(ids[i], quantities[i]);
+                } else {
+                    failed.increment();
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RuntimeException ex) {
+                exceptions.increment();
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    // Failed checkouts that were neither out of stock nor a deadlock, plus anything that threw
+    private long errors() {
+        return failed.sum() - StoreApp.stockRejections(dataAdapter) - StoreApp.deadlocks(dataAdapter) + exceptions.sum();
+    }
+
+    private int pickProduct(ThreadLocalRandom random) {
+        double u = random.nextDouble();
+        int lo = 1;
+        int hi = zipfCdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (zipfCdf[mid] < u) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Product i (1-based) is picked with probability proportional to 1 / i^exponent; cdf[0] is unused
+    private static double[] zipfCdf(int products, double exponent) {
+        double[] cdf = new double[products + 1];
+        double sum = 0;
+        for (int i = 1; i <= products; i++) {
+            sum += 1 / Math.pow(i, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 1; i <= products; i++) cdf[i] /= sum;
+        cdf[products] = 1;
+        return cdf;
+    }
+
+    // 1 + geometric, so the mean is about basketMean and big baskets are rare but do happen
+    private static int basketSize(ThreadLocalRandom random, double basketMean, int basketMax) {
+        if (basketMean <= 1) return 1;
+        double p = 1 / basketMean;
+        int extra = (int) (Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+        return Math.min(basketMax, 1 + extra);
+    }
+
+    // Prints the summary and checks stock against the order lines; returns false if anything was oversold
+    private boolean report() throws SQLException {
+        long rejected = StoreApp.stockRejections(dataAdapter);
+        long deadlocks = StoreApp.deadlocks(dataAdapter);
+        long attempts = checkouts.sum();
+        System.out.printf("Checkouts: %d, committed %d, out of stock %d (%.1f%%), deadlocks %d, errors %d (%.2f%%)%n",
+                attempts, committed.sum(), rejected, percent(rejected, attempts), deadlocks, errors(),
+                percent(errors(), attempts));
+        System.out.printf("Logins: %d, failed %d%n", logins.sum(), loginFailures.sum());
+        long[] deadlocked = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+        if (deadlocked != null) System.out.println("JVM threads deadlocked at the end: " + deadlocked.length);
+        System.out.println();
+        System.out.print(StoreApp.metricsReport());
+        System.out.println();
+
+        double stock = doubleOption("stock");
+        int oversold = 0;
+        int ledgerMismatches = 0;
+        int unaccounted = 0;
+        String sql = "SELECT p.productID, p.quantity, COALESCE(SUM(l.quantity), 0) FROM products p "
+                + "LEFT JOIN orderLine l ON l.productID = p.productID AND l.orderID > ? "
+                + "GROUP BY p.productID, p.quantity ORDER BY p.productID";
+        try (Connection connection = store.newConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, store.storedOrderID());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    double left = rs.getDouble(2);
+                    double written = rs.getDouble(3);
+                    if (left < -1e-9 || written > stock + 1e-9) {
+                        oversold++;
+                        if (oversold <= 10) {
+                            System.out.printf("OVERSOLD product %d: stock %.0f, sold %.0f, left %.0f%n", id, stock, written, left);
+                        }
+                    }
+                    if (Math.abs(stock - written - left) > 1e-6) ledgerMismatches++;
+                    if (id < sold.length() && Math.abs(sold.get(id) - written) > 1e-6) unaccounted++;
+                }
+            }
+            try (PreparedStatement count = connection.prepareStatement("SELECT COUNT(*) FROM orders WHERE orderID > ?")) {
+                count.setInt(1, store.storedOrderID());
+                try (ResultSet rs = count.executeQuery()) {
+                    rs.next();
+                    long orders = rs.getLong(1);
+                    if (orders != committed.sum()) {
+                        System.out.println("Orders in the database: " + orders + ", reported committed: " + committed.sum());
+                        unaccounted++;
+                    }
+                }
+            }
+        }
+        System.out.printf("Oversell incidents: %d, products whose stock does not add up: %d, "
+                + "sales the generator and database disagree on: %d%n", oversold, ledgerMismatches, unaccounted);
+        return oversold == 0 && ledgerMismatches == 0 && unaccounted == 0;
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private double doubleOption(String name) {
+        return Double.parseDouble(options.get(name));
+    }
+}
@@ -0,0 +1,47 @@
+package storeapp.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataAdapter.loadUser with a PBKDF2-hashed password. Almost all of the time is the deliberately slow hash,
+ * so a change here usually means the iteration count or the lookup query changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadUserBenchmark {
+
+    private EmbeddedStore store;
+    private Object dataAdapter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        store = new EmbeddedStore(10, 1);
+        dataAdapter = store.dataAdapter();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Benchmark
+    public Object loadUser() {
+        return StoreApp.loadUser(dataAdapter, EmbeddedStore.USERNAME, EmbeddedStore.PASSWORD);
+    }
+
+    @Benchmark
+    public Object loadUserWrongPassword() {
+        return StoreApp.loadUser(dataAdapter, EmbeddedStore.USERNAME, "not the password");
+    }
+
+    @Benchmark
+    public Object loadUserUnknown() {
+        return StoreApp.loadUser(dataAdapter, "nobody", EmbeddedStore.PASSWORD);
+    }
+}
@@ -0,0 +1,67 @@
+package storeapp.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQLiteToMySQLMigrator.migrate copying a generated SQLite products table into the embedded store.
+ * The first iteration inserts, later ones take the ON DUPLICATE KEY UPDATE path, like re-running an import.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MigratorBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    private EmbeddedStore store;
+    private Path sqliteFile;
+    private Connection target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        store = new EmbeddedStore(0, 0);
+        target = store.newConnection();
+        sqliteFile = Files.createTempFile("storeapp-bench", ".db");
+        try (Connection sqlite = DriverManager.getConnection("jdbc:sqlite:" + sqliteFile)) {
+            try (Statement s = sqlite.createStatement()) {
+                s.execute("CREATE TABLE products (productID INTEGER PRIMARY KEY, productName TEXT, price REAL, quantity REAL)");
+            }
+            sqlite.setAutoCommit(false);
+            try (PreparedStatement ps = sqlite.prepareStatement("INSERT INTO products VALUES (?, ?, ?, ?)")) {
+                for (int id = 1; id <= rows; id++) {
+                    ps.setInt(1, id);
+                    ps.setString(2, "Imported product " + id);
+                    ps.setDouble(3, 1 + id % 500 / 100.0);
+                    ps.setDouble(4, id % 50);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            sqlite.commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        target.close();
+        store.close();
+        Files.deleteIfExists(sqliteFile);
+    }
+
+    @Benchmark
+    public void migrate() {
+        StoreApp.migrateSqlite(sqliteFile.toString(), target);
+    }
+}
@@ -0,0 +1,111 @@
+package storeapp.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Not a benchmark: a crash-recovery check for the order journal, run against the embedded store.
+ * It lets a journal compact, then reopens it with the checkpoint it had before compaction (what a crash could
+ * leave behind) and checks that the sales appended after compaction still reach the database. Exits with 1 on
+ * a failed check.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar storeapp.bench.OrderJournalRecoveryCheck
+ */
+public final class OrderJournalRecoveryCheck {
+
+    private static final int SALES_BEFORE = 20;
+    private static final int SALES_AFTER = 2;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("order-journal-check");
+        Path file = dir.resolve("orders.journal");
+        Path checkpoint = Paths.get(file + ".checkpoint");
+        boolean ok = true;
+
+        try (EmbeddedStore store = new EmbeddedStore(10, 1)) {
+            Object adapter = store.dataAdapter();
+            Object pricer = StoreApp.newPricer();
+            int ordersAtStart = countOrders(store);
+
+            // Fill the journal while nothing replays, then let it drain; compactBytes 1 empties it once drained
+            long staleCheckpoint;
+            try (AutoCloseable journal = StoreApp.newOrderJournal(file, adapter, 1)) {
+                for (int i = 0; i < SALES_BEFORE; i++) StoreApp.journal(journal, sale(store, pricer));
+                staleCheckpoint = Files.size(file);
+                StoreApp.startReplay(journal);
+                ok &= await(() -> StoreApp.pendingSales(journal) == 0 && size(file) == 0, "journal drains and compacts");
+            }
+            ok &= check(readCheckpoint(checkpoint) == 0, "compaction leaves a zeroed checkpoint on disk");
+
+            // New sales after compaction, not replayed yet
+            try (AutoCloseable journal = StoreApp.newOrderJournal(file, adapter, 1)) {
+                for (int i = 0; i < SALES_AFTER; i++) StoreApp.journal(journal, sale(store, pricer));
+            }
+
+            // The old offset survives a crash and now points past the end of the smaller file
+            Files.write(checkpoint, ByteBuffer.allocate(8).putLong(staleCheckpoint).array());
+            try (AutoCloseable journal = StoreApp.newOrderJournal(file, adapter, Long.MAX_VALUE)) {
+                ok &= check(StoreApp.pendingSales(journal) == SALES_AFTER, "reopened journal still has the new sales pending");
+                StoreApp.startReplay(journal);
+                ok &= await(() -> StoreApp.pendingSales(journal) == 0, "new sales replay");
+                ok &= check(StoreApp.replayedSales(journal) == SALES_AFTER, "every new sale is replayed");
+            }
+            ok &= check(countOrders(store) == ordersAtStart + SALES_BEFORE + SALES_AFTER, "every sale is in the database once");
+        }
+
+        System.out.println(ok ? "All order journal checks passed" : "Order journal checks FAILED");
+        if (!ok) System.exit(1);
+    }
+
+    private static Object sale(EmbeddedStore store, Object pricer) {
+        Object order = StoreApp.newOrder(store.buyerID());
+        StoreApp.addLine(pricer, order, 1, 1.10, 1);
+        return order;
+    }
+
+    private static int countOrders(EmbeddedStore store) throws SQLException {
+        try (Connection c = store.newConnection();
+             Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM orders")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static long readCheckpoint(Path checkpoint) throws Exception {
+        byte[] bytes = Files.readAllBytes(checkpoint);
+        return bytes.length < 8 ? 0 : ByteBuffer.wrap(bytes).getLong();
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (Exception ex) {
+            return -1;
+        }
+    }
+
+    private interface Condition {
+        boolean holds() throws Exception;
+    }
+
+    private static boolean await(Condition condition, String what) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.holds()) {
+            if (System.currentTimeMillis() > deadline) return check(false, what);
+            Thread.sleep(20);
+        }
+        return check(true, what);
+    }
+
+    private static boolean check(boolean passed, String what) {
+        System.out.println((passed ? "  ok    " : "  FAIL  ") + what);
+        return passed;
+    }
+}
@@ -0,0 +1,39 @@
+package storeapp.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building an order in memory through OrderPricer, the way the order view does on every scan.
+ * Every product is added twice, so half of the calls merge into an existing line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderLinesBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int products;
+
+    private Object pricer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pricer = StoreApp.newPricer();
+    }
+
+    @Benchmark
+    public long accumulateLines() {
+        Object order = StoreApp.newOrder(1);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int p = 1; p <= products; p++) {
+                StoreApp.addLine(pricer, order, p, 2.49, 1);
+            }
+        }
+        return StoreApp.totalCostCents(order);
+    }
+}
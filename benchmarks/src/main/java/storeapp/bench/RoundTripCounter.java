@@ -0,0 +1,118 @@
+package storeapp.bench;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Counts the calls that would each be one round-trip to a MySQL server: every statement execution (a whole batch
+ * counts once, as with rewriteBatchedStatements), commit, rollback and connection validation. The embedded
+ * database has no network to measure, so this stands in for the server's "Questions" counter.
+ * Connections opened through wrap(url) are counted; everything else is left alone.
+ */
+final class RoundTripCounter {
+
+    private static final String PREFIX = "jdbc:roundtrips:";
+    private static final LongAdder ROUND_TRIPS = new LongAdder();
+
+    static {
+        try {
+            DriverManager.registerDriver(new CountingDriver());
+        } catch (SQLException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private RoundTripCounter() {
+    }
+
+    // A URL whose connections are counted
+    static String wrap(String url) {
+        return PREFIX + url;
+    }
+
+    static long count() {
+        return ROUND_TRIPS.sum();
+    }
+
+    private static Connection counted(Connection connection) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("commit") || name.equals("rollback") || name.equals("isValid")) ROUND_TRIPS.increment();
+            Object result = invoke(connection, method, args);
+            return result instanceof Statement ? counted((Statement) result) : result;
+        };
+        return (Connection) Proxy.newProxyInstance(RoundTripCounter.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, handler);
+    }
+
+    private static Statement counted(Statement statement) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) ROUND_TRIPS.increment();
+            return invoke(statement, method, args);
+        };
+        return (Statement) Proxy.newProxyInstance(RoundTripCounter.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static final class CountingDriver implements Driver {
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) return null;
+            return counted(DriverManager.getConnection(url.substring(PREFIX.length()), info));
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(PREFIX);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package storeapp.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataAdapter.saveOrder end to end: header insert, batched line inserts and set-based stock decrements in one
+ * transaction, or with batched=false the original path of two round-trips per line. The order is priced inside the
+ * measured method, as the order view does before paying. Orders written during an iteration are deleted after it so
+ * the tables stay the same size.
+ * Round-trips are counted by RoundTripCounter on the pool's connections and reported next to the time as the
+ * roundTrips and orders counters; their ratio, round-trips per saveOrder, is also printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveOrderBenchmark {
+
+    @Param({"1", "10", "1000"})
+    public int lines;
+
+    @Param({"true", "false"})
+    public boolean batched;
+
+    private EmbeddedStore store;
+    private Object dataAdapter;
+    private Object pricer;
+    private long roundTrips;
+    private long orders;
+
+    // Summed over each iteration by JMH
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RoundTrips {
+        public long roundTrips;
+        public long orders;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        store = new EmbeddedStore(Math.max(lines, 1000), 1, true);
+        dataAdapter = store.dataAdapter();
+        StoreApp.setBatchedOrderWrites(dataAdapter, batched);
+        pricer = StoreApp.newPricer();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteOrders() throws Exception {
+        store.deleteOrdersAfterStored();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.printf("%nround-trips per saveOrder (lines=%d, batched=%b): %.1f%n",
+                lines, batched, orders == 0 ? 0.0 : (double) roundTrips / orders);
+        store.close();
+    }
+
+    @Benchmark
+    public boolean saveOrder(RoundTrips counters) {
+        Object order = StoreApp.newOrder(store.buyerID());
+        for (int p = 1; p <= lines; p++) {
+            StoreApp.addLine(pricer, order, p, 1.99, 1);
+        }
+        long before = RoundTripCounter.count();
+        if (!StoreApp.saveOrder(dataAdapter, order)) {
+            throw new IllegalStateException("saveOrder failed; see the log above");
+        }
+        long trips = RoundTripCounter.count() - before;
+        counters.roundTrips += trips;
+        counters.orders++;
+        roundTrips += trips;
+        orders++;
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package storeapp.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.*;
+
+/**
+ * Launches the application in fresh JVMs and reports how long it takes until the login window is interactive
+ * and until the database is ready. Each run uses --exit-after-startup, so it needs a display (or xvfb).
+ * The application classes are on this jar's classpath, which the child JVMs reuse.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar storeapp.bench.StartupBenchmark [runs]
+ */
+public final class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = System.getProperty("java.class.path");
+
+        Map<String, List<Long>> results = new TreeMap<>();
+        for (int i = 0; i < runs; i++) {
+            Process p = new ProcessBuilder(java, "-cp", classpath, "Application", "--exit-after-startup")
+                    .redirectErrorStream(true)
+                    .start();
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    // Lines look like "STARTUP <milestone> <n> ms"
+                    if (!line.startsWith("STARTUP ") || !line.endsWith(" ms")) continue;
+                    String body = line.substring(8, line.length() - 3);
+                    int space = body.lastIndexOf(' ');
+                    results.computeIfAbsent(body.substring(0, space), k -> new ArrayList<>())
+                           .add(Long.parseLong(body.substring(space + 1)));
+                }
+            }
+            int exit = p.waitFor();
+            if (exit != 0) System.out.println("Run " + (i + 1) + " exited with " + exit);
+        }
+
+        System.out.println("Startup milestones over " + runs + " runs (ms since JVM start):");
+        for (Map.Entry<String, List<Long>> e : results.entrySet()) {
+            List<Long> v = e.getValue();
+            Collections.sort(v);
+            System.out.printf("  %-28s min %5d  median %5d  max %5d%n",
+                    e.getKey(), v.get(0), v.get(v.size() / 2), v.get(v.size() - 1));
+        }
+    }
+}
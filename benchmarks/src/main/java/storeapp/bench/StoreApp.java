@@ -0,0 +1,279 @@
+package storeapp.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Typed access to the application classes, which live in the default package.
+ * JMH refuses benchmark classes in the default package, and Java code in a named package cannot name
+ * default-package types, so every call goes through a MethodHandle held in a static final field.
+ * Handles on measured paths are erased to Object and called with invokeExact; the JIT treats them as constants
+ * and inlines through them, so the indirection does not show in the results.
+ */
+final class StoreApp {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> CONNECTION_POOL = type("ConnectionPool");
+    private static final Class<?> DATA_ADAPTER = type("DataAdapter");
+    private static final Class<?> ORDER = type("Order");
+    private static final Class<?> ORDER_PRICER = type("OrderPricer");
+    private static final Class<?> TAX_RULE = type("OrderPricer$TaxRule");
+    private static final Class<?> PRODUCT_CACHE = type("ProductCache");
+    private static final Class<?> ORDER_JOURNAL = type("OrderJournal");
+
+    private static final MethodHandle NEW_POOL = constructor(CONNECTION_POOL,
+            String.class, String.class, String.class, int.class, int.class, long.class);
+    private static final MethodHandle NEW_DATA_ADAPTER = constructor(DATA_ADAPTER, CONNECTION_POOL);
+    private static final MethodHandle NEW_ORDER = constructor(ORDER).asType(MethodType.methodType(Object.class));
+    private static final MethodHandle NEW_PRICER = constructor(ORDER_PRICER, TAX_RULE);
+    private static final MethodHandle NO_TAX = staticGetter(ORDER_PRICER, "NO_TAX", TAX_RULE);
+
+    private static final MethodHandle LOAD_PRODUCT = erased(DATA_ADAPTER, "loadProduct", type("Product"), int.class);
+    private static final MethodHandle LOAD_ORDER = erased(DATA_ADAPTER, "loadOrder", ORDER, int.class);
+    private static final MethodHandle SAVE_ORDER = erased(DATA_ADAPTER, "saveOrder", boolean.class, ORDER);
+    private static final MethodHandle LOAD_USER = erased(DATA_ADAPTER, "loadUser", type("User"), String.class, String.class);
+    private static final MethodHandle STOCK_REJECTIONS = method(DATA_ADAPTER, "getStockRejections", long.class);
+    private static final MethodHandle DEADLOCKS = method(DATA_ADAPTER, "getDeadlocks", long.class);
+    private static final MethodHandle SET_BATCHED = method(DATA_ADAPTER, "setBatchedOrderWrites", void.class, boolean.class);
+    private static final MethodHandle PRODUCT_CACHE_OF = method(DATA_ADAPTER, "getProductCache", PRODUCT_CACHE);
+    private static final MethodHandle INVALIDATE_ALL = method(PRODUCT_CACHE, "invalidateAll", void.class);
+
+    private static final MethodHandle NEW_JOURNAL = constructor(ORDER_JOURNAL,
+            Path.class, DATA_ADAPTER, type("StockReservationService"), long.class);
+    private static final MethodHandle JOURNAL_APPEND = method(ORDER_JOURNAL, "append", CompletableFuture.class, ORDER);
+    private static final MethodHandle JOURNAL_START_REPLAY = method(ORDER_JOURNAL, "startReplay", void.class);
+    private static final MethodHandle JOURNAL_PENDING = method(ORDER_JOURNAL, "getPendingSales", int.class);
+    private static final MethodHandle JOURNAL_REPLAYED = method(ORDER_JOURNAL, "getReplayedSales", long.class);
+
+    private static final MethodHandle USER_ID = erased(type("User"), "getUserID", int.class);
+    private static final MethodHandle PRODUCT_PRICE = erased(type("Product"), "getPrice", double.class);
+    private static final MethodHandle SET_BUYER = erased(ORDER, "setBuyerID", void.class, int.class);
+    private static final MethodHandle SET_DATE = erased(ORDER, "setDate", void.class, String.class);
+    private static final MethodHandle ORDER_ID = method(ORDER, "getOrderID", int.class);
+    private static final MethodHandle TOTAL_CENTS = erased(ORDER, "getTotalCostCents", long.class);
+    private static final MethodHandle ADD_LINE = erased(ORDER_PRICER, "addLine", type("OrderLine"),
+            ORDER, int.class, double.class, double.class);
+
+    private static final MethodHandle HASH_PASSWORD = staticMethod(type("PasswordHasher"), "hash", String.class, String.class);
+    private static final MethodHandle METRICS_REPORT = staticMethod(type("StoreMetrics"), "report", String.class);
+    private static final MethodHandle MIGRATE_SQLITE = staticMethod(type("SQLiteToMySQLMigrator"), "migrate",
+            void.class, String.class, Connection.class);
+
+    private StoreApp() {
+    }
+
+    static AutoCloseable newPool(String url, String user, String password, int minSize, int maxSize, long timeoutMillis) {
+        return (AutoCloseable) call(NEW_POOL, url, user, password, minSize, maxSize, timeoutMillis);
+    }
+
+    static Object newDataAdapter(Object pool) {
+        return call(NEW_DATA_ADAPTER, pool);
+    }
+
+    static Object loadProduct(Object adapter, int productID) {
+        try {
+            return (Object) LOAD_PRODUCT.invokeExact(adapter, productID);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static Object loadOrder(Object adapter, int orderID) {
+        try {
+            return (Object) LOAD_ORDER.invokeExact(adapter, orderID);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static boolean saveOrder(Object adapter, Object order) {
+        try {
+            return (boolean) SAVE_ORDER.invokeExact(adapter, order);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static Object loadUser(Object adapter, String username, String password) {
+        try {
+            return (Object) LOAD_USER.invokeExact(adapter, (Object) username, (Object) password);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static int userID(Object user) {
+        try {
+            return (int) USER_ID.invokeExact(user);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static double price(Object product) {
+        try {
+            return (double) PRODUCT_PRICE.invokeExact(product);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static long stockRejections(Object adapter) {
+        return (Long) call(STOCK_REJECTIONS, adapter);
+    }
+
+    static long deadlocks(Object adapter) {
+        return (Long) call(DEADLOCKS, adapter);
+    }
+
+    // false switches saveOrder to the original one INSERT and one UPDATE per line
+    static void setBatchedOrderWrites(Object adapter, boolean batched) {
+        call(SET_BATCHED, adapter, batched);
+    }
+
+    // Latency percentiles of every instrumented operation in this JVM, one line each
+    static String metricsReport() {
+        return (String) call(METRICS_REPORT);
+    }
+
+    static void clearProductCache(Object adapter) {
+        call(INVALIDATE_ALL, call(PRODUCT_CACHE_OF, adapter));
+    }
+
+    // An OrderJournal at file that replays into adapter, without stock reservations
+    static AutoCloseable newOrderJournal(Path file, Object adapter, long compactBytes) {
+        return (AutoCloseable) call(NEW_JOURNAL, file, adapter, null, compactBytes);
+    }
+
+    // Waits until the sale is on disk
+    static void journal(Object journal, Object order) {
+        ((CompletableFuture<?>) call(JOURNAL_APPEND, journal, order)).join();
+    }
+
+    static void startReplay(Object journal) {
+        call(JOURNAL_START_REPLAY, journal);
+    }
+
+    static int pendingSales(Object journal) {
+        return (Integer) call(JOURNAL_PENDING, journal);
+    }
+
+    static long replayedSales(Object journal) {
+        return (Long) call(JOURNAL_REPLAYED, journal);
+    }
+
+    static Object newOrder(int buyerID) {
+        try {
+            Object order = (Object) NEW_ORDER.invokeExact();
+            SET_BUYER.invokeExact(order, buyerID);
+            SET_DATE.invokeExact(order, (Object) LocalDateTime.now().toString());
+            return order;
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static int orderID(Object order) {
+        return (Integer) call(ORDER_ID, order);
+    }
+
+    static long totalCostCents(Object order) {
+        try {
+            return (long) TOTAL_CENTS.invokeExact(order);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static Object newPricer() {
+        return call(NEW_PRICER, call(NO_TAX));
+    }
+
+    static Object addLine(Object pricer, Object order, int productID, double unitPrice, double quantity) {
+        try {
+            return (Object) ADD_LINE.invokeExact(pricer, order, productID, unitPrice, quantity);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static String hashPassword(String password) {
+        return (String) call(HASH_PASSWORD, password);
+    }
+
+    static void migrateSqlite(String sqlitePath, Connection target) {
+        call(MIGRATE_SQLITE, sqlitePath, target);
+    }
+
+    // For set-up calls that are not measured
+    private static Object call(MethodHandle handle, Object... args) {
+        try {
+            return handle.invokeWithArguments(args);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable ex) {
+        if (ex instanceof RuntimeException) throw (RuntimeException) ex;
+        if (ex instanceof Error) throw (Error) ex;
+        throw new IllegalStateException(ex);
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Application class " + name + " is not on the class path", ex);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            return LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameters));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static MethodHandle method(Class<?> owner, String name, Class<?> returns, Class<?>... parameters) {
+        try {
+            return LOOKUP.findVirtual(owner, name, MethodType.methodType(returns, parameters));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Reference types become Object so call sites can use invokeExact without naming application classes
+    private static MethodHandle erased(Class<?> owner, String name, Class<?> returns, Class<?>... parameters) {
+        MethodHandle handle = method(owner, name, returns, parameters);
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (!type.parameterType(i).isPrimitive()) type = type.changeParameterType(i, Object.class);
+        }
+        if (!type.returnType().isPrimitive()) type = type.changeReturnType(Object.class);
+        return handle.asType(type);
+    }
+
+    private static MethodHandle staticMethod(Class<?> owner, String name, Class<?> returns, Class<?>... parameters) {
+        try {
+            return LOOKUP.findStatic(owner, name, MethodType.methodType(returns, parameters));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static MethodHandle staticGetter(Class<?> owner, String name, Class<?> type) {
+        try {
+            return LOOKUP.findStaticGetter(owner, name, type);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -1,13 +1,17 @@
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.swing.*;
 
 public class Application {
 
     private static Application instance;   // Singleton pattern
 
-    public static Application getInstance() {
+    public static synchronized Application getInstance() {
         if (instance == null) {
             instance = new Application();
         }
@@ -15,43 +19,106 @@ public class Application {
     }
     // Main components of this application
 
-    private Connection connection;
+    // Completes once the database is connected and the schema is up to date, or once it was found unreachable and
+    // the application started offline (sales then go to the order journal); everything DB-backed waits on it
+    private final CompletableFuture<Void> databaseReady;
 
-    public Connection getDBConnection() {
-        return connection;
+    public CompletableFuture<Void> getDatabaseReady() {
+        return databaseReady;
+    }
+
+    private ConnectionPool connectionPool;
+
+    public ConnectionPool getConnectionPool() {
+        awaitDatabase();
+        return connectionPool;
+    }
+
+    // Borrows a connection from the pool; callers must close it to give it back
+    public Connection getDBConnection() throws SQLException {
+        return getConnectionPool().getConnection();
     }
 
     private DataAdapter dataAdapter;
 
+    private MetricsReporter metricsReporter;
+
     private User currentUser = null;
 
+    private AuthService.Session currentSession = null;
+
     public User getCurrentUser() { return currentUser; }
 
+    public AuthService.Session getCurrentSession() { return currentSession; }
+
+    public void setCurrentSession(AuthService.Session session) {
+        this.currentSession = session;
+        this.currentUser = session == null ? null : session.getUser();
+    }
+
     public void setCurrentUser(User user) {
         this.currentUser = user;
     }
 
-    private ProductView productView = new ProductView();
+    // Views other than the login screen are only built the first time they are needed
+
+    private ProductView productView;
+
+    private OrderView orderView;
 
-    private OrderView orderView = new OrderView();
+    private ProductBrowserView productBrowserView;
 
-    private MainScreen mainScreen = new MainScreen();
+    private SalesReportView salesReportView;
 
-    public MainScreen getMainScreen() {
+    private MainScreen mainScreen;
+
+    public synchronized MainScreen getMainScreen() {
+        if (mainScreen == null) {
+            mainScreen = new MainScreen();
+        }
         return mainScreen;
     }
 
-    public ProductView getProductView() {
+    public synchronized ProductView getProductView() {
+        if (productView == null) {
+            productView = new ProductView();
+            productController = new ProductController(productView);
+        }
         return productView;
     }
 
-    public OrderView getOrderView() {
+    public synchronized ProductBrowserView getProductBrowserView() {
+        if (productBrowserView == null) {
+            productBrowserView = new ProductBrowserView();
+            productBrowserController = new ProductBrowserController(productBrowserView);
+        }
+        return productBrowserView;
+    }
+
+    public synchronized SalesReportView getSalesReportView() {
+        if (salesReportView == null) {
+            salesReportView = new SalesReportView();
+            salesReportController = new SalesReportController(salesReportView);
+        }
+        return salesReportView;
+    }
+
+    public synchronized OrderView getOrderView() {
+        if (orderView == null) {
+            orderView = new OrderView();
+            orderController = new OrderController(orderView);
+        }
         return orderView;
     }
 
-    public LoginScreen loginScreen = new LoginScreen();
+    public LoginScreen loginScreen;
 
-    public LoginScreen getLoginScreen() {
+    // Never built when running headless (--http)
+    public synchronized LoginScreen getLoginScreen() {
+        if (loginScreen == null) {
+            loginScreen = new LoginScreen();
+            loginController = new LoginController(loginScreen);
+        }
         return loginScreen;
     }
 
@@ -59,34 +126,183 @@ public class Application {
 
     private ProductController productController;
 
-    public ProductController getProductController() {
+    public synchronized ProductController getProductController() {
+        getProductView();
         return productController;
     }
 
     private OrderController orderController;
 
-    public OrderController getOrderController() {
+    private ProductBrowserController productBrowserController;
+
+    private SalesReportController salesReportController;
+
+    public synchronized SalesReportController getSalesReportController() {
+        getSalesReportView();
+        return salesReportController;
+    }
+
+    public synchronized ProductBrowserController getProductBrowserController() {
+        getProductBrowserView();
+        return productBrowserController;
+    }
+
+    public synchronized OrderController getOrderController() {
+        getOrderView();
         return orderController;
     }
 
     public DataAdapter getDataAdapter() {
+        awaitDatabase();
         return dataAdapter;
     }
 
+    // Created up front; its tasks wait for the database in the background instead of blocking the caller
+    private final AsyncDataService asyncDataService;
+
+    public AsyncDataService getAsyncDataService() {
+        return asyncDataService;
+    }
+
+    private GroupCommitOrderWriter orderWriter;
+
+    public GroupCommitOrderWriter getOrderWriter() {
+        awaitDatabase();
+        return orderWriter;
+    }
+
+    // Completes once the name search index has been built; until then searching by name is unavailable
+    private final CompletableFuture<ProductSearchIndex> searchIndexReady = new CompletableFuture<>();
+
+    public ProductSearchIndex getProductSearchIndex() {
+        return searchIndexReady.getNow(null);
+    }
+
+    private SalesReports salesReports;
+
+    // Sales totals for managers; check isReady() before trusting the figures
+    public SalesReports getSalesReports() {
+        awaitDatabase();
+        return salesReports;
+    }
+
+    // Prices baskets in the order view; no tax until a rule is configured (e.g. OrderPricer.flatRate(825))
+    private final OrderPricer orderPricer = new OrderPricer(OrderPricer.NO_TAX);
+
+    public OrderPricer getOrderPricer() {
+        return orderPricer;
+    }
+
+    private AuthService authService;
+
+    public AuthService getAuthService() {
+        awaitDatabase();
+        return authService;
+    }
+
+    private StockReservationService stockReservations;
+
+    private StoreService storeService;
+
+    private OrderJournal orderJournal;
+
+    // Sales recorded at this terminal, on their way to the database
+    public OrderJournal getOrderJournal() {
+        awaitDatabase();
+        return orderJournal;
+    }
+
+    // The login, catalog and order flows shared by the Swing controllers and the HTTP API.
+    // Waits for the database bootstrap; on the event dispatch thread use getStoreServiceIfReady instead
+    public StoreService getStoreService() {
+        awaitDatabase();
+        return storeService;
+    }
+
+    // The store service, or null while the database bootstrap is still running; never waits
+    public StoreService getStoreServiceIfReady() {
+        return databaseReady.isDone() ? storeService : null;
+    }
+
+    public StockReservationService getStockReservations() {
+        awaitDatabase();
+        return stockReservations;
+    }
+
 
     private Application() {
+        StartupTimer.mark("application constructor");
+
+        // Connect and check the schema on a background thread while the login window is being built
+        databaseReady = CompletableFuture.runAsync(this::connectDatabase, runnable -> {
+            Thread t = new Thread(runnable, "database-bootstrap");
+            t.setDaemon(true);
+            t.start();
+        });
+        asyncDataService = new AsyncDataService(databaseReady.thenApply(v -> dataAdapter), 10);
+    }
+
+    private static final String DATABASE_URL =
+            "jdbc:mysql://localhost:3306/storeapp?rewriteBatchedStatements=true&connectTimeout=5000";
+
+    private void connectDatabase() {
         try {
             // Load MySQL Driver
             Class.forName("com.mysql.cj.jdbc.Driver");
 
-            // Connect to MySQL
-            connection = DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/storeapp", 
-                "root",                               
-                "1234"                                 
-            );
-            System.out.println("MySQL connection established successfully!");
-            dataAdapter = new DataAdapter(connection);
+            // Connect to MySQL through a bounded pool (min 2, max 10, wait up to 5s for a free connection).
+            // If it cannot be reached, start anyway with an empty pool: checkout only needs the local order journal.
+            // Any other failure (wrong credentials, a broken migration) still stops the application
+            boolean online = true;
+            try {
+                connectionPool = new ConnectionPool(DATABASE_URL, "root", "1234", 2, 10, 5000);
+                System.out.println("MySQL connection established successfully!");
+                StartupTimer.mark("database connected");
+            } catch (SQLException ex) {
+                if (!isConnectionFailure(ex)) throw ex;
+                System.out.println("MySQL database cannot be reached, starting offline! " + ex.getMessage());
+                ex.printStackTrace();
+                connectionPool = new ConnectionPool(DATABASE_URL, "root", "1234", 0, 10, 5000);
+                online = false;
+            }
+
+            // Apply pending schema migrations; existing data is never dropped
+            if (online) {
+                try {
+                    migrateSchema();
+                } catch (SQLException ex) {
+                    if (!isConnectionFailure(ex)) migrationFailed(ex);
+                    System.out.println("MySQL database went away during migration, starting offline! " + ex.getMessage());
+                    ex.printStackTrace();
+                    online = false;
+                }
+            }
+
+            dataAdapter = new DataAdapter(connectionPool);
+            // Up to 50 orders or 5 ms per commit; callers wait at most 2s for room in the queue
+            orderWriter = new GroupCommitOrderWriter(dataAdapter, 50, 5, 1000, 2000);
+            // Items in an open order hold their stock for 15 minutes
+            stockReservations = new StockReservationService(dataAdapter, 15 * 60 * 1000L);
+            // Verified logins are remembered for 15 minutes and re-checked against the stored hash at most once a
+            // minute, sessions last 8 hours; 5 attempts per username, then one more every 10s
+            authService = new AuthService(dataAdapter, 1000, 15 * 60 * 1000L, 60 * 1000L, 8 * 60 * 60 * 1000L, 5, 10_000);
+            salesReports = new SalesReports(dataAdapter);
+            dataAdapter.setSalesReports(salesReports);
+            // Sales are journaled here first; emptied whenever it is over 1 MB and everything has been replayed
+            orderJournal = new OrderJournal(Paths.get("orders.journal"), dataAdapter, stockReservations, 1024 * 1024);
+            Runtime.getRuntime().addShutdownHook(new Thread(orderJournal::close, "order-journal-close"));
+            storeService = new StoreService(dataAdapter, authService, stockReservations, orderWriter, orderPricer,
+                    salesReports, orderJournal);
+            if (online) {
+                startDatabaseWork();
+            } else {
+                reconnectInBackground();
+            }
+
+            // Latency percentiles per operation: live over JMX, and every minute appended to metrics.log
+            StoreMetrics.registerMBeans();
+            metricsReporter = new MetricsReporter(Paths.get("metrics.log"), 60_000);
+            Runtime.getRuntime().addShutdownHook(new Thread(metricsReporter::close, "metrics-flush"));
         }
         catch (ClassNotFoundException ex) {
             System.out.println("MySQL JDBC Driver is not installed. System exits with error!");
@@ -98,29 +314,168 @@ public class Application {
             ex.printStackTrace();
             System.exit(2);
         }
+        catch (IOException ex) {
+            System.out.println("Schema migration or order journal failed. System exits with error! " + ex.getMessage());
+            ex.printStackTrace();
+            System.exit(3);
+        }
+    }
 
-        productController = new ProductController(productView);
-        orderController = new OrderController(orderView);
-        loginController = new LoginController(loginScreen);
+    // Only a database that cannot be reached is a reason to run offline; MySQL reports those as SQLState class 08
+    private static boolean isConnectionFailure(SQLException ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException
+                    || t instanceof SQLRecoverableException) return true;
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) return true;
+            }
+        }
+        return false;
     }
 
-    public void runSqlScript(String scriptPath) {
-        try {
-            String sql = new String(Files.readAllBytes(Paths.get(scriptPath)));
-
-            // Strip block comments and line comments
-            sql = sql.replaceAll("(?s)/\\*.*?\\*/", "");
-            sql = sql.replaceAll("(?m)^\\s*--.*$", "");
-
-            String[] statements = sql.split("(?m);\\s*(?=\\r?\\n|$)");
-            try (Statement stmt = connection.createStatement()) {
-                for (String s : statements) {
-                    String trimmed = s.trim();
-                    if (trimmed.isEmpty()) continue;
-                    stmt.execute(trimmed);
+    private static void migrationFailed(Exception ex) {
+        System.out.println("Schema migration failed. System exits with error! " + ex.getMessage());
+        ex.printStackTrace();
+        System.exit(3);
+    }
+
+    private void migrateSchema() throws SQLException, IOException {
+        new SchemaMigrator(connectionPool, SchemaMigrator.locateMigrations()).migrate();
+        StartupTimer.mark("schema checked");
+    }
+
+    // Everything that needs the database up and its schema current
+    private void startDatabaseWork() {
+        orderJournal.startReplay();
+        loadCatalogSnapshot();
+        buildSearchIndex();
+        buildSalesReports();
+        catchUpSalesReports();
+    }
+
+    // Other terminals' orders reach the report totals every 30 seconds
+    private void catchUpSalesReports() {
+        ScheduledExecutorService catchUp = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sales-report-catch-up");
+            t.setDaemon(true);
+            return t;
+        });
+        catchUp.scheduleWithFixedDelay(() -> {
+            try {
+                salesReports.catchUp();
+            } catch (SQLException ex) {
+                System.out.println("Database access error! Sales reports not caught up: " + ex.getMessage());
+            }
+        }, 30, 30, TimeUnit.SECONDS);
+    }
+
+    // Started offline: keep trying to migrate, every 5s, and start the database work once that succeeds.
+    // An unreachable database is reported on the first retry and then once a minute; anything else is fatal,
+    // the same as at startup
+    private void reconnectInBackground() {
+        Thread t = new Thread(() -> {
+            int failures = 0;
+            long nextReport = 0;
+            while (true) {
+                try {
+                    Thread.sleep(5000);
+                    migrateSchema();
+                    System.out.println("MySQL connection established successfully after " + failures + " failed attempts!");
+                    startDatabaseWork();
+                    return;
+                } catch (SQLException ex) {
+                    if (!isConnectionFailure(ex)) migrationFailed(ex);
+                    failures++;
+                    long now = System.currentTimeMillis();
+                    if (now >= nextReport) {
+                        System.out.println("MySQL database still cannot be reached after " + failures
+                                + " attempts, retrying every 5s: " + ex.getMessage());
+                        nextReport = now + 60_000;
+                    }
+                } catch (IOException ex) {
+                    migrationFailed(ex);
+                } catch (InterruptedException ex) {
+                    return;
                 }
             }
-            System.out.println("SQL script executed: " + scriptPath);
+        }, "database-reconnect");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Product lookups are served from an in-memory copy of the catalog. It is attached to the adapter empty, so
+     * products saved during the first scan are not missed (lookups of rows not loaded yet go to the database), and
+     * re-read every minute to pick up changes made by other terminals, the same staleness the product cache allows.
+     */
+    private void loadCatalogSnapshot() {
+        ProductCatalogSnapshot snapshot = new ProductCatalogSnapshot(1024);
+        dataAdapter.setCatalogSnapshot(snapshot);
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-snapshot-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot.reload(connectionPool);
+            } catch (SQLException ex) {
+                System.out.println("Database access error! Catalog snapshot not refreshed: " + ex.getMessage());
+            }
+        }, 0, 60, TimeUnit.SECONDS);
+    }
+
+    // Attached to the adapter before the scan starts so products saved meanwhile are not missed
+    private void buildSearchIndex() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        dataAdapter.setSearchIndex(index);
+        Thread t = new Thread(() -> {
+            try {
+                index.scan(connectionPool);
+                searchIndexReady.complete(index);
+            } catch (SQLException ex) {
+                System.out.println("Database access error!");
+                ex.printStackTrace();
+                dataAdapter.setSearchIndex(null);
+                searchIndexReady.completeExceptionally(ex);
+            }
+        }, "search-index-build");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Totals are already being updated by new orders while the history is scanned; half the pool does the scan
+    private void buildSalesReports() {
+        Thread t = new Thread(() -> {
+            try {
+                salesReports.rebuild(5);
+            } catch (SQLException ex) {
+                System.out.println("Database access error!");
+                ex.printStackTrace();
+            }
+        }, "sales-report-build");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // A bulk import changed the tables underneath everything that was read from them at startup
+    private void reloadAfterImport() throws SQLException {
+        dataAdapter.getProductCache().invalidateAll();
+        ProductCatalogSnapshot snapshot = dataAdapter.getCatalogSnapshot();
+        if (snapshot != null) snapshot.reload(connectionPool);
+        buildSearchIndex();
+        buildSalesReports();
+    }
+
+    private void awaitDatabase() {
+        databaseReady.join();
+    }
+
+    public void runSqlScript(String scriptPath) {
+        // Streamed statement by statement; DML is batched 500 at a time and committed every 5000 statements
+        try (Connection connection = getDBConnection()) {
+            new SqlScriptRunner(connection, 500, 5000, 100000).run(Paths.get(scriptPath));
         } catch (IOException | SQLException ex) {
             throw new RuntimeException("Failed to run SQL script: " + scriptPath, ex);
         }
@@ -129,22 +484,79 @@ public class Application {
 
 
     public static void main(String[] args) {
+        StartupTimer.mark("main");
+        boolean exitAfterStartup = false;
+        boolean migrateSqlite = false;
+        String sqliteArg = null;
+        int httpPort = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--exit-after-startup")) {
+                exitAfterStartup = true;
+            } else if (args[i].equals("--http")) {
+                // Headless: serve the HTTP API instead of opening the login window
+                httpPort = 8080;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--")) httpPort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--migrate-sqlite")) {
+                // SQLite import is an explicit job now, not something every launch does
+                migrateSqlite = true;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--")) sqliteArg = args[++i];
+            }
+        }
+
         Application app = Application.getInstance();
-        app.runSqlScript("src/createTable.sql");
-        String sqlitePath = detectSQLitePath(args);
-        if (sqlitePath != null) {
-            try {
-                System.out.println("Running SQLite -> MySQL migration from: " + sqlitePath);
-                SQLiteToMySQLMigrator.migrate(sqlitePath, app.getDBConnection());
-            } catch (Exception ex) {
-                System.out.println("Migration failed: " + ex.getMessage());
-                ex.printStackTrace();
+        if (httpPort >= 0) {
+            serveHttp(app, httpPort);
+            return;
+        }
+        boolean exitWhenShown = exitAfterStartup;
+        SwingUtilities.invokeLater(() -> {
+            app.getLoginScreen().setVisible(true);
+            // The window can take input once the event queue has processed its first paint
+            SwingUtilities.invokeLater(() -> {
+                StartupTimer.mark("login window interactive");
+                if (exitWhenShown) {
+                    // Not joined here: that would freeze the event dispatch thread until the database is up
+                    app.databaseReady.thenRun(() -> {
+                        StartupTimer.mark("database ready");
+                        System.exit(0);
+                    });
+                }
+            });
+        });
+
+        if (migrateSqlite) {
+            String sqlitePath = detectSQLitePath(sqliteArg == null ? new String[0] : new String[] { sqliteArg });
+            if (sqlitePath == null) {
+                System.out.println("No SQLite database found to migrate. Pass a path after --migrate-sqlite.");
+                return;
             }
-        } else {
-            System.out.println("No SQLite database found to migrate. You can pass a path as the first argument.");
+            app.getDatabaseReady().thenRunAsync(() -> {
+                try {
+                    System.out.println("Running SQLite -> MySQL migration from: " + sqlitePath);
+                    // Users, products, orders and lines, resumable; 4 of the pool's 10 connections so the
+                    // application keeps working while it runs
+                    new ParallelMigrator(sqlitePath, app.getConnectionPool(), 4, 1000, 10000).migrate();
+                    app.reloadAfterImport();
+                } catch (Exception ex) {
+                    System.out.println("Migration failed: " + ex.getMessage());
+                    ex.printStackTrace();
+                }
+            });
         }
-        app.getLoginScreen().setVisible(true);
     }
+    private static void serveHttp(Application app, int port) {
+        try {
+            // 200 platform threads only matter on JVMs without virtual threads
+            StoreHttpServer server = new StoreHttpServer(app.getStoreService(), port, 200);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close, "http-shutdown"));
+        } catch (IOException ex) {
+            System.out.println("Could not start the HTTP API on port " + port + ": " + ex.getMessage());
+            ex.printStackTrace();
+            System.exit(4);
+        }
+    }
+
     //helper method to detect sqlite path
     private static String detectSQLitePath(String[] args) {
         if (args != null && args.length > 0 && args[0] != null && !args[0].trim().isEmpty()) {
@@ -0,0 +1,89 @@
+import javax.swing.*;
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs DataAdapter calls off the Swing event dispatch thread and hands back CompletableFutures.
+ * Uses a virtual thread per task when the JVM supports it (Java 21+), otherwise a bounded platform thread pool.
+ * Controllers attach their UI updates with whenCompleteAsync(..., AsyncDataService.edt()) so they run back on the
+ * event dispatch thread.
+ */
+public class AsyncDataService implements AutoCloseable {
+
+    private final CompletableFuture<DataAdapter> dataAdapter;
+    private final ExecutorService executor;
+
+    public AsyncDataService(DataAdapter dataAdapter, int platformThreads) {
+        this(CompletableFuture.completedFuture(dataAdapter), platformThreads);
+    }
+
+    // Tasks submitted before the adapter is available simply wait for it, without blocking the caller
+    public AsyncDataService(CompletableFuture<DataAdapter> dataAdapter, int platformThreads) {
+        this.dataAdapter = dataAdapter;
+        this.executor = createExecutor("data-worker", platformThreads);
+    }
+
+    public static Executor edt() {
+        return SwingUtilities::invokeLater;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public CompletableFuture<Product> loadProduct(int id) {
+        return call(adapter -> adapter.loadProduct(id));
+    }
+
+    public CompletableFuture<Boolean> saveProduct(Product product) {
+        return call(adapter -> adapter.saveProduct(product));
+    }
+
+    public CompletableFuture<Order> loadOrder(int id) {
+        return call(adapter -> adapter.loadOrder(id));
+    }
+
+    public CompletableFuture<Boolean> saveOrder(Order order) {
+        return call(adapter -> adapter.saveOrder(order));
+    }
+
+    public CompletableFuture<User> loadUser(String username, String password) {
+        return call(adapter -> adapter.loadUser(username, password));
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return dataAdapter.thenApplyAsync(adapter -> task.get(), executor);
+    }
+
+    private <T> CompletableFuture<T> call(Function<DataAdapter, T> task) {
+        return dataAdapter.thenApplyAsync(task, executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // A virtual thread per task on Java 21+, otherwise platformThreads daemon threads named namePrefix-1, -2, ...
+    static ExecutorService createExecutor(String namePrefix, int platformThreads) {
+        // Looked up reflectively so the code still compiles and runs on Java 17
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            ThreadFactory factory = new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, namePrefix + "-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            };
+            return Executors.newFixedThreadPool(platformThreads, factory);
+        }
+    }
+}
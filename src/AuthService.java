@@ -0,0 +1,283 @@
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Logs users in against the salted hashes in the users table.
+ * A verified login is remembered for a while (as an HMAC of the password under a key that only lives in this
+ * process), so a cashier unlocking the same terminal again is checked without PBKDF2 or a database query.
+ * Password changes made through this service drop the remembered login at once. A change made by another process
+ * is noticed the next time the login is re-checked against the stored hash, which happens at most once per
+ * recheck interval, or at the latest when the login expires. Logins also hand out session tokens that can be
+ * validated without the database.
+ * Attempts that have to verify a password are rate limited per username with a small token bucket. Buckets are
+ * never evicted while they still limit someone, so flooding made-up usernames cannot clear a real lockout.
+ */
+public class AuthService {
+
+    public static class Session {
+        private final String token;
+        private final User user;
+        private final long expiresAt;
+
+        Session(String token, User user, long expiresAt) {
+            this.token = token;
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    // Thrown when a username has used up its login attempts; the caller should ask the user to wait
+    public static class RateLimitedException extends RuntimeException {
+        private final long retryAfterMillis;
+
+        public RateLimitedException(String username, long retryAfterMillis) {
+            super("Too many login attempts for " + username);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+
+    private static class Credential {
+        User user;
+        final byte[] mac;
+        final long expiresAt;
+        long checkedAt;         // when the stored hash was last seen to be the one this login was verified against
+
+        Credential(User user, byte[] mac, long expiresAt, long checkedAt) {
+            this.user = user;
+            this.mac = mac;
+            this.expiresAt = expiresAt;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private static class Bucket {
+        double tokens;
+        long updatedAt;
+
+        Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final DataAdapter dataAdapter;
+    private final long credentialTtlMillis;
+    private final long recheckMillis;
+    private final long sessionTtlMillis;
+    private final int burst;
+    private final long refillMillis;
+    private final SecretKeySpec macKey;
+
+    private final LinkedHashMap<String, Credential> credentials;
+    private final LinkedHashMap<String, Session> sessions;
+    private final int maxEntries;
+    // Not an LRU map: only buckets that have refilled completely (and so hold no lockout) are ever dropped
+    private final HashMap<String, Bucket> buckets = new HashMap<>();
+    private int bucketSweepAt;
+
+    private long cacheHits = 0;
+    private long databaseChecks = 0;
+    private long rejectedAttempts = 0;
+
+    /**
+     * @param maxEntries     upper bound for the credential and session maps; the rate-limit map is swept of idle
+     *                       buckets when it grows past it
+     * @param recheckMillis  how long a remembered login is trusted before the stored hash is read again
+     * @param burst          login attempts a username may make back to back
+     * @param refillMillis   time it takes to earn one more attempt
+     */
+    public AuthService(DataAdapter dataAdapter, int maxEntries, long credentialTtlMillis, long recheckMillis,
+                       long sessionTtlMillis, int burst, long refillMillis) {
+        this.dataAdapter = dataAdapter;
+        this.credentialTtlMillis = credentialTtlMillis;
+        this.recheckMillis = recheckMillis;
+        this.sessionTtlMillis = sessionTtlMillis;
+        this.burst = burst;
+        this.refillMillis = refillMillis;
+
+        byte[] key = new byte[32];
+        RANDOM.nextBytes(key);
+        this.macKey = new SecretKeySpec(key, "HmacSHA256");
+
+        this.credentials = boundedMap(maxEntries);
+        this.sessions = boundedMap(maxEntries);
+        this.maxEntries = maxEntries;
+        this.bucketSweepAt = maxEntries;
+    }
+
+    private static <V> LinkedHashMap<String, V> boundedMap(int maxEntries) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns a new session for the user, or null if the username or password is wrong.
+     * Throws RateLimitedException when the username has made too many attempts recently.
+     */
+    public Session login(String username, String password) {
+        long now = System.currentTimeMillis();
+        byte[] mac = mac(username, password);
+
+        Credential cached;
+        synchronized (this) {
+            cached = credentials.get(username);
+            if (cached != null && !(cached.expiresAt > now && MessageDigest.isEqual(cached.mac, mac))) cached = null;
+            if (cached != null && now - cached.checkedAt < recheckMillis) {
+                cacheHits++;
+                return newSession(cached.user, now);
+            }
+        }
+        if (cached != null) {
+            // Due for a re-check: one indexed read instead of PBKDF2. A changed hash or a missing user (or no
+            // database) falls through to the full check
+            User current = dataAdapter.loadUserByUsername(username);
+            if (current != null && current.getPassword() != null && current.getPassword().equals(cached.user.getPassword())) {
+                synchronized (this) {
+                    cached.user = current;
+                    cached.checkedAt = now;
+                    cacheHits++;
+                    return newSession(current, now);
+                }
+            }
+            synchronized (this) {
+                credentials.remove(username, cached);
+            }
+        }
+
+        synchronized (this) {
+            // Anything not answered from the cache costs a hash and a query, so it counts against the bucket
+            long wait = takeToken(username, now);
+            if (wait > 0) {
+                rejectedAttempts++;
+                throw new RateLimitedException(username, wait);
+            }
+            databaseChecks++;
+        }
+
+        User user = dataAdapter.loadUser(username, password);
+        synchronized (this) {
+            if (user == null) {
+                credentials.remove(username);
+                return null;
+            }
+            credentials.put(username, new Credential(user, mac, now + credentialTtlMillis, now));
+            return newSession(user, now);
+        }
+    }
+
+    // Returns the user the token belongs to, or null if it is unknown or has expired
+    public synchronized User validateToken(String token) {
+        if (token == null) return null;
+        Session session = sessions.get(token);
+        if (session == null) return null;
+        if (session.expiresAt <= System.currentTimeMillis()) {
+            sessions.remove(token);
+            return null;
+        }
+        return session.user;
+    }
+
+    public synchronized void logout(String token) {
+        sessions.remove(token);
+    }
+
+    /**
+     * Stores a new hash for the user and forgets everything cached for them, including open sessions.
+     */
+    public boolean changePassword(User user, String newPassword) {
+        boolean saved = dataAdapter.updatePasswordHash(user.getUserID(), PasswordHasher.hash(newPassword));
+        invalidate(user.getUsername());
+        return saved;
+    }
+
+    public synchronized void invalidate(String username) {
+        credentials.remove(username);
+        sessions.values().removeIf(s -> s.user.getUsername().equals(username));
+    }
+
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    public synchronized long getDatabaseChecks() {
+        return databaseChecks;
+    }
+
+    public synchronized long getRejectedAttempts() {
+        return rejectedAttempts;
+    }
+
+    private Session newSession(User user, long now) {
+        byte[] raw = new byte[24];
+        RANDOM.nextBytes(raw);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+        Session session = new Session(token, user, now + sessionTtlMillis);
+        sessions.put(token, session);
+        return session;
+    }
+
+    // Returns 0 if an attempt is allowed now, otherwise how long until the next one is
+    private long takeToken(String username, long now) {
+        Bucket bucket = buckets.get(username);
+        if (bucket == null) {
+            if (buckets.size() >= bucketSweepAt) sweepBuckets(now);
+            bucket = new Bucket(burst, now);
+            buckets.put(username, bucket);
+        }
+        bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updatedAt) / (double) refillMillis);
+        bucket.updatedAt = now;
+        if (bucket.tokens >= 1) {
+            bucket.tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - bucket.tokens) * refillMillis);
+    }
+
+    // Drops buckets that would be full by now; the next sweep waits until the map has doubled, so it costs O(1) per insert
+    private void sweepBuckets(long now) {
+        buckets.values().removeIf(b -> b.tokens + (now - b.updatedAt) / (double) refillMillis >= burst);
+        bucketSweepAt = Math.max(maxEntries, buckets.size() * 2);
+    }
+
+    private byte[] mac(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(macKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 is not available", ex);
+        }
+    }
+}
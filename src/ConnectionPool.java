@@ -0,0 +1,332 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small bounded JDBC connection pool.
+ * Connections are handed out as proxies whose close() returns them to the pool,
+ * so callers can keep using try-with-resources exactly like a plain Connection.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+
+    private long idleTimeoutMillis = 10 * 60 * 1000L;      // idle connections above minSize are closed after this
+    private long leakThresholdMillis = 60 * 1000L;         // borrowed longer than this is reported as a leak
+    private int validationTimeoutSeconds = 2;
+    private volatile int statementCacheSize = 64;          // prepared statements kept per connection, 0 disables
+
+    private final Semaphore permits;                        // one permit per connection that may exist
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledEntry, Boolean> borrowed = new ConcurrentHashMap<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicLong retiredStatementHits = new AtomicLong();     // counters of caches whose connection was closed
+    private final AtomicLong retiredStatementMisses = new AtomicLong();
+    private final ScheduledExecutorService housekeeper;
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, String username, String password,
+                          int minSize, int maxSize, long acquireTimeoutMillis) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + " max=" + maxSize);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        // Open the minimum number of connections up front so the first requests don't pay for it
+        for (int i = 0; i < minSize; i++) {
+            idle.offerLast(new PooledEntry(openPhysical()));
+        }
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 30, 30, TimeUnit.SECONDS);
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public void setLeakThresholdMillis(long leakThresholdMillis) {
+        this.leakThresholdMillis = leakThresholdMillis;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public long getStatementCacheHits() {
+        long total = retiredStatementHits.get();
+        for (PooledEntry entry : idle) total += entry.statementHits();
+        for (PooledEntry entry : borrowed.keySet()) total += entry.statementHits();
+        return total;
+    }
+
+    public long getStatementCacheMisses() {
+        long total = retiredStatementMisses.get();
+        for (PooledEntry entry : idle) total += entry.statementMisses();
+        for (PooledEntry entry : borrowed.keySet()) total += entry.statementMisses();
+        return total;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getBorrowedConnections() {
+        return borrowed.size();
+    }
+
+    /**
+     * Borrows a connection, waiting up to the acquire timeout for one to become free.
+     * The returned connection must be closed to give it back to the pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        // Time to a usable connection: waiting for a permit plus validating or opening one
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                StoreMetrics.POOL_WAIT.record(System.nanoTime() - start, true);
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis + " ms waiting for a database connection"
+                        + " (borrowed=" + borrowed.size() + ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", ex);
+        }
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                // Validate on borrow; a broken connection is dropped and we try the next one
+                if (isUsable(entry)) break;
+                closePhysical(entry);
+            }
+            if (entry == null) {
+                entry = new PooledEntry(openPhysical());
+            }
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.borrowTrace = new Throwable("Connection borrowed here");
+            borrowed.put(entry, Boolean.TRUE);
+            StoreMetrics.POOL_WAIT.record(System.nanoTime() - start, false);
+            return entry.newProxy();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            StoreMetrics.POOL_WAIT.record(System.nanoTime() - start, true);
+            throw ex;
+        }
+    }
+
+    private void giveBack(PooledEntry entry) {
+        if (borrowed.remove(entry) == null) return;     // already returned
+        try {
+            Connection c = entry.physical;
+            if (closed || c.isClosed()) {
+                closePhysical(entry);
+            } else {
+                // Leave the connection the way a fresh one would look
+                if (!c.getAutoCommit()) {
+                    c.rollback();
+                    c.setAutoCommit(true);
+                }
+                c.clearWarnings();
+                entry.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(entry);               // LIFO keeps hot connections hot and lets the rest go idle
+            }
+        } catch (SQLException ex) {
+            closePhysical(entry);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isUsable(PooledEntry entry) {
+        try {
+            return !entry.physical.isClosed() && entry.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection c = DriverManager.getConnection(url, username, password);
+        totalConnections.incrementAndGet();
+        return c;
+    }
+
+    private void closePhysical(PooledEntry entry) {
+        StatementCache cache = entry.statementCache;
+        if (cache != null) {
+            retiredStatementHits.addAndGet(cache.getHits());
+            retiredStatementMisses.addAndGet(cache.getMisses());
+            cache.closeAll();
+        }
+        try { entry.physical.close(); } catch (SQLException ignore) {}
+        totalConnections.decrementAndGet();
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        // Idle eviction: close connections idle too long, but never go below minSize
+        Iterator<PooledEntry> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > minSize) {
+            PooledEntry entry = it.next();
+            if (now - entry.lastUsed > idleTimeoutMillis && idle.removeFirstOccurrence(entry)) {
+                closePhysical(entry);
+            }
+        }
+
+        // Leak detection: report connections that have been out for too long
+        for (PooledEntry entry : borrowed.keySet()) {
+            if (!entry.leakReported && now - entry.borrowedAt > leakThresholdMillis) {
+                entry.leakReported = true;
+                System.out.println("Possible connection leak: connection borrowed " + (now - entry.borrowedAt) + " ms ago");
+                entry.borrowTrace.printStackTrace(System.out);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            closePhysical(entry);
+        }
+        // Borrowed connections are closed when their borrowers give them back
+    }
+
+    private class PooledEntry {
+        final Connection physical;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Throwable borrowTrace;
+        volatile boolean leakReported;
+        volatile StatementCache statementCache;
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+        }
+
+        StatementCache statements() {
+            if (statementCache == null && statementCacheSize > 0) {
+                statementCache = new StatementCache(physical, statementCacheSize);
+            }
+            return statementCache;
+        }
+
+        long statementHits() {
+            StatementCache cache = statementCache;
+            return cache == null ? 0 : cache.getHits();
+        }
+
+        long statementMisses() {
+            StatementCache cache = statementCache;
+            return cache == null ? 0 : cache.getMisses();
+        }
+
+        Connection newProxy() {
+            leakReported = false;
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Handler(this));
+        }
+    }
+
+    // Each borrow gets its own handler so a stale proxy cannot touch a connection that was handed to someone else
+    private class Handler implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean released = false;
+
+        Handler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        giveBack(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || entry.physical.isClosed();
+                case "unwrap":
+                    if (args[0] == Connection.class) return proxy;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + entry.physical + "]";
+                default:
+                    break;
+            }
+            if (released) throw new SQLException("Connection has already been returned to the pool");
+
+            // prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) are served from the per-connection cache
+            if (method.getName().equals("prepareStatement") && entry.statements() != null) {
+                if (args.length == 1) {
+                    return entry.statements().prepare((Connection) proxy, (String) args[0]);
+                }
+                if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                    return entry.statements().prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(entry.physical, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            // Other statements must not hand out the physical connection either (getConnection().close() would close it)
+            return result instanceof Statement ? StatementCache.wrapUncached((Statement) result, (Connection) proxy) : result;
+        }
+    }
+}
@@ -1,15 +1,155 @@
 import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
+// Statements are prepared through pooled connections, which serve them from a per-connection StatementCache
 public class DataAdapter {
-    private final Connection connection;
+    // Upper bound on products per set-based stock UPDATE, keeps the statement text and parameter count reasonable
+    private static final int MAX_DECREMENTS_PER_STATEMENT = 500;
 
-    public DataAdapter(Connection connection) {
-        this.connection = connection;
+    private final ConnectionPool pool;
+
+    // Up to 10,000 products for 60s; unknown IDs are remembered for 5s
+    private final ProductCache productCache = new ProductCache(10_000, 60_000, 5_000);
+
+    private boolean batchedOrderWrites = true;
+
+    // Optional in-memory catalog kept in step with this adapter's own writes; loadProduct is served from it first
+    private volatile ProductCatalogSnapshot catalogSnapshot;
+
+    // Optional name search index, also kept in step with saveProduct
+    private volatile ProductSearchIndex searchIndex;
+
+    // Optional sales totals, told about every committed order
+    private volatile SalesReports salesReports;
+
+    // Orders refused because a product did not have enough stock; the transaction was rolled back
+    public static class InsufficientStockException extends SQLException {
+        public InsufficientStockException(String message) {
+            super(message);
+        }
+    }
+
+    // Thrown by saveProduct when the editor is neither the product's seller nor a manager
+    public static class NotProductOwnerException extends RuntimeException {
+        public NotProductOwnerException(String message) {
+            super(message);
+        }
+    }
+
+    private final LongAdder stockRejections = new LongAdder();
+    private final LongAdder deadlocks = new LongAdder();
+
+    public DataAdapter(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // Order writes that failed for lack of stock, through saveOrder, the group commit writer or journal replay
+    public long getStockRejections() {
+        return stockRejections.sum();
     }
 
+    // Order writes the database rolled back as a deadlock victim or serialization failure
+    public long getDeadlocks() {
+        return deadlocks.sum();
+    }
+
+    // For writers that run their own order transactions, so their failures show up in the counters above
+    void countOrderFailure(SQLException e) {
+        if (e instanceof InsufficientStockException) stockRejections.increment();
+        else if (isDeadlock(e)) deadlocks.increment();
+    }
+
+    // When false, saveOrder falls back to one INSERT and one UPDATE round-trip per order line
+    public void setBatchedOrderWrites(boolean batchedOrderWrites) {
+        this.batchedOrderWrites = batchedOrderWrites;
+    }
+
+    public boolean isBatchedOrderWrites() {
+        return batchedOrderWrites;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    public ProductCache getProductCache() {
+        return productCache;
+    }
+
+    public ProductCatalogSnapshot getCatalogSnapshot() {
+        return catalogSnapshot;
+    }
+
+    public void setCatalogSnapshot(ProductCatalogSnapshot catalogSnapshot) {
+        this.catalogSnapshot = catalogSnapshot;
+    }
+
+    public ProductSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public void setSearchIndex(ProductSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    public SalesReports getSalesReports() {
+        return salesReports;
+    }
+
+    public void setSalesReports(SalesReports salesReports) {
+        this.salesReports = salesReports;
+    }
+
+    // From the catalog snapshot if it has the product, else through the product cache
     public Product loadProduct(int id) {
+        ProductCatalogSnapshot snapshot = catalogSnapshot;
+        if (snapshot != null) {
+            long start = System.nanoTime();
+            Product product = snapshot.getProduct(id);
+            if (product != null) {
+                StoreMetrics.LOAD_PRODUCT.record(System.nanoTime() - start, false);
+                return product;
+            }
+        }
+        return loadProduct(id, false);
+    }
+
+    /**
+     * Reads the product from the database, bypassing the snapshot and the cache, and refreshes both with it.
+     * For callers that need current stock; returns null if it does not exist or the database cannot be reached.
+     */
+    public Product reloadProduct(int id) {
+        return loadProduct(id, true);
+    }
+
+    private Product loadProduct(int id, boolean reload) {
+        long start = System.nanoTime();
+        boolean failed = false;
+        if (reload) productCache.invalidate(id);
+        ProductCache.Lookup cached = productCache.get(id);
+        try {
+            if (cached.hit) return cached.product;
+            Product product = loadProductFromDatabase(id);
+            productCache.put(id, product, cached);
+            ProductCatalogSnapshot snapshot = catalogSnapshot;
+            if (product != null && snapshot != null) snapshot.put(product);
+            return product;
+        } catch (SQLException e) {
+            failed = true;
+            System.out.println("Database access error!");
+            e.printStackTrace();
+            // Keeps terminals selling through an outage, at the last price this process saw
+            return reload ? null : cached.stale;
+        } finally {
+            StoreMetrics.LOAD_PRODUCT.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    private Product loadProductFromDatabase(int id) throws SQLException {
         String sql = "SELECT productID, productName, price, quantity, sellerID FROM products WHERE productID = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return null;
@@ -21,20 +161,57 @@ public class DataAdapter {
                 try { product.setSellerID(rs.getInt("sellerID")); } catch (Exception ignore) {}
                 return product;
             }
-        } catch (SQLException e) {
-            System.out.println("Database access error!");
-            e.printStackTrace();
-            return null;
         }
     }
 
     public boolean saveProduct(Product product) {
-        String existsSql = "SELECT 1 FROM products WHERE productID = ?";
-        try (PreparedStatement check = connection.prepareStatement(existsSql)) {
+        return saveProduct(product, null);
+    }
+
+    /**
+     * Saves the product on behalf of editor. A new product gets editor as its seller; an existing one keeps its
+     * seller and may only be changed by that seller or a manager, otherwise NotProductOwnerException is thrown.
+     * Ownership is read on the same connection as the write, so a failed lookup never passes for a new product.
+     */
+    public boolean saveProduct(Product product, User editor) {
+        long start = System.nanoTime();
+        boolean saved = false;
+        try {
+            saved = saveProductToDatabase(product, editor);
+            ProductCatalogSnapshot snapshot = catalogSnapshot;
+            if (saved && snapshot != null) snapshot.put(product);
+            ProductSearchIndex index = searchIndex;
+            if (saved && index != null) index.put(product);
+            SalesReports reports = salesReports;
+            if (saved && reports != null) reports.productSaved(product);
+            return saved;
+        } finally {
+            // Invalidate whether or not the write succeeds; a failed write may still have changed the row
+            productCache.invalidate(product.getProductID());
+            StoreMetrics.SAVE_PRODUCT.record(System.nanoTime() - start, !saved);
+        }
+    }
+
+    private boolean saveProductToDatabase(Product product, User editor) {
+        String existsSql = "SELECT sellerID FROM products WHERE productID = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement check = connection.prepareStatement(existsSql)) {
             check.setInt(1, product.getProductID());
             boolean exists;
+            int sellerID = 0;
             try (ResultSet rs = check.executeQuery()) {
                 exists = rs.next();
+                if (exists) sellerID = rs.getInt(1);
+            }
+
+            if (editor != null) {
+                if (!exists) {
+                    product.setSellerID(editor.getUserID());
+                } else if (sellerID == editor.getUserID() || editor.isManager()) {
+                    product.setSellerID(sellerID);
+                } else {
+                    throw new NotProductOwnerException("Product " + product.getProductID() + " belongs to another seller.");
+                }
             }
 
             if (exists) {
@@ -65,117 +242,561 @@ public class DataAdapter {
         }
     }
 
+    /**
+     * Returns up to limit products with an ID greater than afterProductID, in ID order, or null on error.
+     * Pass the last ID of one page to get the next; the primary key index makes every page cost the same no
+     * matter how deep into the catalog it is. The first page comes from loadProductPage(limit).
+     */
+    public List<Product> loadProductPage(int afterProductID, int limit) {
+        return loadProductPage(Integer.valueOf(afterProductID), limit);
+    }
+
+    // The first page of the catalog in ID order, whatever the smallest ID is; null on error
+    public List<Product> loadProductPage(int limit) {
+        return loadProductPage(null, limit);
+    }
+
+    private List<Product> loadProductPage(Integer afterProductID, int limit) {
+        String sql = "SELECT productID, productName, price, quantity, sellerID FROM products "
+                + (afterProductID == null ? "" : "WHERE productID > ? ") + "ORDER BY productID LIMIT ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            if (afterProductID != null) ps.setInt(i++, afterProductID);
+            ps.setInt(i, limit);
+            List<Product> page = new ArrayList<>(limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Product product = new Product();
+                    product.setProductID(rs.getInt(1));
+                    product.setName(rs.getString(2));
+                    product.setPrice(rs.getDouble(3));
+                    product.setQuantity(rs.getDouble(4));
+                    product.setSellerID(rs.getInt(5));
+                    page.add(product);
+                }
+            }
+            return page;
+        } catch (SQLException e) {
+            System.out.println("Database access error!");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Where each page of pageSize products starts, found with one streamed scan of the primary key only.
+     * Lets a table jump straight to any page with loadProductPage instead of paging through everything before it.
+     */
+    public static class ProductPages {
+        private final int pageSize;
+        private final int rowCount;
+        private final int[] afterIDs;
+
+        ProductPages(int pageSize, int rowCount, int[] afterIDs) {
+            this.pageSize = pageSize;
+            this.rowCount = rowCount;
+            this.afterIDs = afterIDs;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public int getPageCount() {
+            return afterIDs.length;
+        }
+
+        // The afterProductID to pass to loadProductPage for the given page; page 0 has none and is loaded
+        // with loadProductPage(limit)
+        public int getAfterID(int page) {
+            return afterIDs[page];
+        }
+    }
+
+    public ProductPages loadProductPages(int pageSize) {
+        String sql = "SELECT productID FROM products ORDER BY productID";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);     // stream the keys instead of buffering them all
+            int[] afterIDs = new int[16];
+            int pages = 1;
+            int rows = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    rows++;
+                    if (rows % pageSize == 0) {
+                        if (pages == afterIDs.length) afterIDs = Arrays.copyOf(afterIDs, pages * 2);
+                        afterIDs[pages++] = id;
+                    }
+                }
+            }
+            // A full last page does not start another one
+            if (rows > 0 && rows % pageSize == 0) pages--;
+            return new ProductPages(pageSize, rows, Arrays.copyOf(afterIDs, pages));
+        } catch (SQLException e) {
+            System.out.println("Database access error!");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Order header and lines in one round-trip; lines come back as extra rows of the LEFT JOIN
+    private static final String ORDER_WITH_LINES_SQL =
+            "SELECT o.orderID, o.buyerID, o.totalCost, o.totalTax, o.date, l.productID, l.quantity, l.cost " +
+            "FROM orders o LEFT JOIN orderLine l ON l.orderID = o.orderID ";
+
+    // loadOrders pads each IN-list up to one of these sizes so only a handful of distinct statements get prepared
+    private static final int[] IN_LIST_SIZES = { 1, 8, 32, 128, 512 };
+
     public Order loadOrder(int id) {
-        String orderSql = "SELECT orderID, buyerID, totalCost, totalTax, date FROM orders WHERE orderID = ?";
-        try (PreparedStatement ps = connection.prepareStatement(orderSql)) {
+        long start = System.nanoTime();
+        boolean failed = false;
+        String sql = ORDER_WITH_LINES_SQL + "WHERE o.orderID = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                Order order = new Order();
-                order.setOrderID(rs.getInt("orderID"));
-                order.setBuyerID(rs.getInt("buyerID"));
-                order.setTotalCost(rs.getDouble("totalCost"));
-                order.setTotalTax(rs.getDouble("totalTax"));
-                order.setDate(rs.getString("date"));
-
-                // load order lines
-                String linesSql = "SELECT orderID, productID, quantity, cost FROM orderLine WHERE orderID = ?";
-                try (PreparedStatement lps = connection.prepareStatement(linesSql)) {
-                    lps.setInt(1, id);
-                    try (ResultSet lrs = lps.executeQuery()) {
-                        while (lrs.next()) {
-                            OrderLine line = new OrderLine();
-                            line.setOrderID(lrs.getInt("orderID"));
-                            line.setProductID(lrs.getInt("productID"));
-                            line.setQuantity(lrs.getDouble("quantity"));
-                            line.setCost(lrs.getDouble("cost"));
-                            order.addLine(line);
-                        }
+                Map<Integer, Order> orders = readOrders(rs);
+                return orders.get(id);
+            }
+        } catch (SQLException e) {
+            failed = true;
+            System.out.println("Database access error!");
+            e.printStackTrace();
+            return null;
+        } finally {
+            StoreMetrics.LOAD_ORDER.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Loads many orders with their lines using one JOIN query per chunk of IDs instead of two queries per order.
+     * The result keeps the order in which IDs were given; IDs that do not exist are left out.
+     * Returns null on a database error, like the other loaders, so it is never mistaken for "no such orders".
+     */
+    public Map<Integer, Order> loadOrders(Collection<Integer> ids) {
+        Map<Integer, Order> result = new LinkedHashMap<>();
+        if (ids.isEmpty()) return result;
+
+        // Drop duplicates but remember the caller's ordering
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Integer, Order> found = new HashMap<>();
+        int maxChunk = IN_LIST_SIZES[IN_LIST_SIZES.length - 1];
+
+        try (Connection connection = pool.getConnection()) {
+            for (int from = 0; from < distinct.size(); from += maxChunk) {
+                List<Integer> chunk = distinct.subList(from, Math.min(from + maxChunk, distinct.size()));
+                int size = IN_LIST_SIZES[0];
+                for (int s : IN_LIST_SIZES) {
+                    size = s;
+                    if (s >= chunk.size()) break;
+                }
+                try (PreparedStatement ps = connection.prepareStatement(
+                        ORDER_WITH_LINES_SQL + "WHERE o.orderID IN (" + placeholders(size) + ") ORDER BY o.orderID")) {
+                    for (int i = 0; i < size; i++) {
+                        // Padding repeats the last ID, which the IN-list simply ignores
+                        ps.setInt(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        found.putAll(readOrders(rs));
                     }
                 }
-
-                return order;
             }
         } catch (SQLException e) {
             System.out.println("Database access error!");
             e.printStackTrace();
             return null;
         }
+
+        for (Integer id : distinct) {
+            Order order = found.get(id);
+            if (order != null) result.put(id, order);
+        }
+        return result;
+    }
+
+    // Reads rows of ORDER_WITH_LINES_SQL by column position; rows of the same order are grouped into one Order
+    private static Map<Integer, Order> readOrders(ResultSet rs) throws SQLException {
+        Map<Integer, Order> orders = new LinkedHashMap<>();
+        Order order = null;
+        while (rs.next()) {
+            int orderID = rs.getInt(1);
+            if (order == null || order.getOrderID() != orderID) {
+                order = orders.get(orderID);
+                if (order == null) {
+                    order = new Order();
+                    order.setOrderID(orderID);
+                    order.setBuyerID(rs.getInt(2));
+                    order.setTotalCostCents(Money.fromDecimal(rs.getBigDecimal(3)));
+                    order.setTotalTaxCents(Money.fromDecimal(rs.getBigDecimal(4)));
+                    order.setDate(fromSqlDate(rs.getTimestamp(5)));
+                    orders.put(orderID, order);
+                }
+            }
+
+            int productID = rs.getInt(6);
+            if (rs.wasNull()) continue;          // order without lines
+            // The unit price and tax of a stored line are not kept, only its quantity and cost
+            order.getLineItems().merge(productID, rs.getDouble(7), 0, Money.fromDecimal(rs.getBigDecimal(8)), 0);
+        }
+        return orders;
+    }
+
+    // orders.date is a DATETIME; Order keeps the LocalDateTime.toString() form the rest of the app uses
+    private static Timestamp toSqlDate(String date) {
+        if (date == null || date.isEmpty()) return null;
+        try {
+            return Timestamp.valueOf(java.time.LocalDateTime.parse(date));
+        } catch (java.time.format.DateTimeParseException ex) {
+            return Timestamp.valueOf(date);     // also accept "yyyy-mm-dd hh:mm:ss[.f]"
+        }
+    }
+
+    private static String fromSqlDate(Timestamp ts) {
+        return ts == null ? null : ts.toLocalDateTime().toString();
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) sb.append(i == 0 ? "?" : ", ?");
+        return sb.toString();
     }
 
     public boolean saveOrder(Order order) {
         // We'll insert the order first, then the lines, and update product quantities in a single transaction
+        // Each call borrows its own connection, so the transaction never interferes with other callers' reads
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = pool.getConnection();
+        } catch (SQLException e) {
+            System.out.println("Database access error!");
+            e.printStackTrace();
+            StoreMetrics.SAVE_ORDER.record(System.nanoTime() - start, true);
+            return false;
+        }
         boolean originalAutoCommit;
+        boolean saved = false;
+        long transactionStart = System.nanoTime();
         try {
             originalAutoCommit = connection.getAutoCommit();
             connection.setAutoCommit(false);
 
-            Integer orderIdToUse = order.getOrderID();
-            // If orderID is 0, let DB assign one (AUTO_INCREMENT)
-            if (orderIdToUse == 0) {
-                String insertOrderSql = "INSERT INTO orders (buyerID, totalCost, totalTax, date) VALUES (?, ?, ?, ?)";
-                try (PreparedStatement ps = connection.prepareStatement(insertOrderSql, Statement.RETURN_GENERATED_KEYS)) {
-                    ps.setInt(1, order.getBuyerID());
-                    ps.setDouble(2, order.getTotalCost());
-                    ps.setDouble(3, order.getTotalTax());
-                    ps.setString(4, order.getDate());
-                    ps.executeUpdate();
-                    try (ResultSet keys = ps.getGeneratedKeys()) {
-                        if (keys.next()) {
-                            orderIdToUse = keys.getInt(1);
-                            order.setOrderID(orderIdToUse);
+            writeOrder(connection, order);
+
+            connection.commit();
+            StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, false);
+            connection.setAutoCommit(originalAutoCommit);
+            orderCommitted(order);
+            saved = true;
+            return true;
+        } catch (InsufficientStockException e) {
+            // An expected outcome when stock runs out, not a database fault, so it is counted rather than logged
+            stockRejections.increment();
+            try { connection.rollback(); } catch (SQLException ignore) {}
+            StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, true);
+            try { connection.setAutoCommit(true); } catch (SQLException ignore) {}
+            return false;
+        } catch (SQLException e) {
+            if (isDeadlock(e)) deadlocks.increment();
+            System.out.println("Database access error!");
+            e.printStackTrace();
+            try { connection.rollback(); } catch (SQLException ignore) {}
+            StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, true);
+            try { connection.setAutoCommit(true); } catch (SQLException ignore) {}
+            return false;
+        } finally {
+            try { connection.close(); } catch (SQLException ignore) {}
+            StoreMetrics.SAVE_ORDER.record(System.nanoTime() - start, !saved);
+        }
+    }
+
+    /**
+     * Writes an order that was journaled locally, recording its sale key in the same transaction so a sale that
+     * is replayed twice (e.g. after a crash before the journal checkpoint) is only stored once. Returns the order's
+     * ID, the one stored the first time for a repeat. Throws InsufficientStockException if stock ran out meanwhile,
+     * or SQLException if the database cannot be reached; nothing is written in either case.
+     */
+    int applyJournaledOrder(Order order, String saleKey) throws SQLException {
+        long start = System.nanoTime();
+        boolean saved = false;
+        try (Connection connection = pool.getConnection()) {
+            long transactionStart = System.nanoTime();
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "SELECT orderID FROM orderJournalApplied WHERE saleKey = ?")) {
+                    ps.setString(1, saleKey);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            connection.rollback();
+                            order.setOrderID(rs.getInt(1));
+                            saved = true;
+                            return order.getOrderID();
                         }
                     }
                 }
-            } else {
-                String insertOrderSql = "INSERT INTO orders (orderID, buyerID, totalCost, totalTax, date) VALUES (?, ?, ?, ?, ?)";
-                try (PreparedStatement ps = connection.prepareStatement(insertOrderSql)) {
-                    ps.setInt(1, orderIdToUse);
-                    ps.setInt(2, order.getBuyerID());
-                    ps.setDouble(3, order.getTotalCost());
-                    ps.setDouble(4, order.getTotalTax());
-                    ps.setString(5, order.getDate());
+                writeOrder(connection, order);
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO orderJournalApplied (saleKey, orderID) VALUES (?, ?)")) {
+                    ps.setString(1, saleKey);
+                    ps.setInt(2, order.getOrderID());
                     ps.executeUpdate();
                 }
+                connection.commit();
+                StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, false);
+            } catch (SQLException e) {
+                countOrderFailure(e);
+                try { connection.rollback(); } catch (SQLException ignore) {}
+                StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, true);
+                order.setOrderID(0);         // a generated ID from the rolled-back insert must not be reused
+                throw e;
+            } finally {
+                try { connection.setAutoCommit(true); } catch (SQLException ignore) {}
             }
+            orderCommitted(order);
+            saved = true;
+            return order.getOrderID();
+        } finally {
+            StoreMetrics.SAVE_ORDER.record(System.nanoTime() - start, !saved);
+        }
+    }
+
+    // Writes one order (header, lines, stock decrements) on a connection whose transaction the caller owns
+    void writeOrder(Connection connection, Order order) throws SQLException {
+        // If orderID is 0, let DB assign one (AUTO_INCREMENT)
+        if (order.getOrderID() == 0) {
+            String insertOrderSql = "INSERT INTO orders (buyerID, totalCost, totalTax, date) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement ps = connection.prepareStatement(insertOrderSql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, order.getBuyerID());
+                ps.setBigDecimal(2, Money.toDecimal(order.getTotalCostCents()));
+                ps.setBigDecimal(3, Money.toDecimal(order.getTotalTaxCents()));
+                ps.setTimestamp(4, toSqlDate(order.getDate()));
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        order.setOrderID(keys.getInt(1));
+                    }
+                }
+            }
+        } else {
+            String insertOrderSql = "INSERT INTO orders (orderID, buyerID, totalCost, totalTax, date) VALUES (?, ?, ?, ?, ?)";
+            try (PreparedStatement ps = connection.prepareStatement(insertOrderSql)) {
+                ps.setInt(1, order.getOrderID());
+                ps.setInt(2, order.getBuyerID());
+                ps.setBigDecimal(3, Money.toDecimal(order.getTotalCostCents()));
+                ps.setBigDecimal(4, Money.toDecimal(order.getTotalTaxCents()));
+                ps.setTimestamp(5, toSqlDate(order.getDate()));
+                ps.executeUpdate();
+            }
+        }
 
-            // Insert lines
-            String insertLineSql = "INSERT INTO orderLine (orderID, productID, quantity, cost) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement lps = connection.prepareStatement(insertLineSql)) {
-                for (OrderLine line : order.getLines()) {
-                    lps.setInt(1, orderIdToUse);
-                    lps.setInt(2, line.getProductID());
-                    lps.setDouble(3, line.getQuantity());
-                    lps.setDouble(4, line.getCost());
-                    lps.executeUpdate();
+        // Insert lines and decrease product quantities
+        if (batchedOrderWrites) {
+            insertLinesBatched(connection, Collections.singletonList(order));
+        } else {
+            insertLinesOneByOne(connection, order.getOrderID(), order.getLineItems());
+        }
+    }
 
-                    // Decrease product quantity
-                    String updateQtySql = "UPDATE products SET quantity = quantity - ? WHERE productID = ?";
-                    try (PreparedStatement ups = connection.prepareStatement(updateQtySql)) {
-                        ups.setDouble(1, line.getQuantity());
-                        ups.setInt(2, line.getProductID());
-                        ups.executeUpdate();
+    /**
+     * Writes several orders with one batch for the headers, one for all lines and set-based stock decrements.
+     * Used by the group-commit writer; the caller owns the transaction. If this throws, generated IDs that were
+     * already assigned to the orders are not reset.
+     */
+    void writeOrders(Connection connection, List<Order> orders) throws SQLException {
+        List<Order> generated = new ArrayList<>();
+        List<Order> explicit = new ArrayList<>();
+        for (Order order : orders) {
+            (order.getOrderID() == 0 ? generated : explicit).add(order);
+        }
+
+        if (!generated.isEmpty()) {
+            String insertOrderSql = "INSERT INTO orders (buyerID, totalCost, totalTax, date) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement ps = connection.prepareStatement(insertOrderSql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Order order : generated) {
+                    ps.setInt(1, order.getBuyerID());
+                    ps.setBigDecimal(2, Money.toDecimal(order.getTotalCostCents()));
+                    ps.setBigDecimal(3, Money.toDecimal(order.getTotalTaxCents()));
+                    ps.setTimestamp(4, toSqlDate(order.getDate()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                // Keys come back in batch order
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Order order : generated) {
+                        if (!keys.next()) throw new SQLException("Missing generated key for batched order insert");
+                        order.setOrderID(keys.getInt(1));
                     }
                 }
             }
+        }
+        if (!explicit.isEmpty()) {
+            String insertOrderSql = "INSERT INTO orders (orderID, buyerID, totalCost, totalTax, date) VALUES (?, ?, ?, ?, ?)";
+            try (PreparedStatement ps = connection.prepareStatement(insertOrderSql)) {
+                for (Order order : explicit) {
+                    ps.setInt(1, order.getOrderID());
+                    ps.setInt(2, order.getBuyerID());
+                    ps.setBigDecimal(3, Money.toDecimal(order.getTotalCostCents()));
+                    ps.setBigDecimal(4, Money.toDecimal(order.getTotalTaxCents()));
+                    ps.setTimestamp(5, toSqlDate(order.getDate()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
 
-            connection.commit();
-            connection.setAutoCommit(originalAutoCommit);
-            return true;
-        } catch (SQLException e) {
-            System.out.println("Database access error!");
-            e.printStackTrace();
-            try { connection.rollback(); } catch (SQLException ignore) {}
-            try { connection.setAutoCommit(true); } catch (SQLException ignore) {}
-            return false;
+        insertLinesBatched(connection, orders);
+    }
+
+    // Called once an order's transaction has committed: stock levels changed for every product in it
+    void orderCommitted(Order order) {
+        ProductCatalogSnapshot snapshot = catalogSnapshot;
+        OrderLines lines = order.getLineItems();
+        for (int i = 0; i < lines.size(); i++) {
+            productCache.invalidate(lines.productID(i));
+            if (snapshot != null) snapshot.adjustQuantity(lines.productID(i), -lines.quantity(i));
+        }
+        SalesReports reports = salesReports;
+        if (reports != null) reports.orderCommitted(order);
+    }
+
+    // Original write path: two round-trips per line. Kept for comparison and for drivers without batch support.
+    private void insertLinesOneByOne(Connection connection, int orderID, OrderLines lines) throws SQLException {
+        String insertLineSql = "INSERT INTO orderLine (orderID, productID, quantity, cost) VALUES (?, ?, ?, ?)";
+        String updateQtySql = "UPDATE products SET quantity = quantity - ? WHERE productID = ? AND quantity >= ?";
+        try (PreparedStatement lps = connection.prepareStatement(insertLineSql);
+             PreparedStatement ups = connection.prepareStatement(updateQtySql)) {
+            for (int i = 0; i < lines.size(); i++) {
+                lps.setInt(1, orderID);
+                lps.setInt(2, lines.productID(i));
+                lps.setDouble(3, lines.quantity(i));
+                lps.setBigDecimal(4, Money.toDecimal(lines.costCents(i)));
+                lps.executeUpdate();
+
+                // Decrease product quantity, but never below zero
+                ups.setDouble(1, lines.quantity(i));
+                ups.setInt(2, lines.productID(i));
+                ups.setDouble(3, lines.quantity(i));
+                if (ups.executeUpdate() != 1) {
+                    throw new InsufficientStockException("Insufficient stock for product " + lines.productID(i));
+                }
+            }
+        }
+    }
+
+    // Batched write path: one JDBC batch for all lines (rewritten into multi-row INSERTs by the driver
+    // when rewriteBatchedStatements=true) plus one set-based UPDATE per chunk of products.
+    private void insertLinesBatched(Connection connection, List<Order> orders) throws SQLException {
+        boolean anyLines = false;
+        String insertLineSql = "INSERT INTO orderLine (orderID, productID, quantity, cost) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement lps = connection.prepareStatement(insertLineSql)) {
+            for (Order order : orders) {
+                OrderLines lines = order.getLineItems();
+                for (int i = 0; i < lines.size(); i++) {
+                    lps.setInt(1, order.getOrderID());
+                    lps.setInt(2, lines.productID(i));
+                    lps.setDouble(3, lines.quantity(i));
+                    lps.setBigDecimal(4, Money.toDecimal(lines.costCents(i)));
+                    lps.addBatch();
+                    anyLines = true;
+                }
+            }
+            if (!anyLines) return;
+            lps.executeBatch();
+        }
+
+        // Sum per product so every product appears once in the CASE expression
+        Map<Integer, Double> decrements = new LinkedHashMap<>();
+        for (Order order : orders) {
+            OrderLines lines = order.getLineItems();
+            for (int i = 0; i < lines.size(); i++) {
+                decrements.merge(lines.productID(i), lines.quantity(i), Double::sum);
+            }
+        }
+
+        List<Map.Entry<Integer, Double>> entries = new ArrayList<>(decrements.entrySet());
+        for (int from = 0; from < entries.size(); from += MAX_DECREMENTS_PER_STATEMENT) {
+            List<Map.Entry<Integer, Double>> chunk =
+                    entries.subList(from, Math.min(from + MAX_DECREMENTS_PER_STATEMENT, entries.size()));
+            try (PreparedStatement ups = connection.prepareStatement(stockDecrementSql(chunk.size()))) {
+                int i = 1;
+                for (Map.Entry<Integer, Double> e : chunk) {
+                    ups.setInt(i++, e.getKey());
+                    ups.setDouble(i++, e.getValue());
+                }
+                for (Map.Entry<Integer, Double> e : chunk) {
+                    ups.setInt(i++, e.getKey());
+                }
+                for (Map.Entry<Integer, Double> e : chunk) {
+                    ups.setInt(i++, e.getKey());
+                    ups.setDouble(i++, e.getValue());
+                }
+                // Rows without enough stock are not matched; any shortfall fails the whole order
+                if (ups.executeUpdate() != chunk.size()) {
+                    throw new InsufficientStockException("Insufficient stock for one of products " + decrementIDs(chunk));
+                }
+            }
         }
     }
 
+    // SQLSTATE class 40 is "transaction rollback": MySQL error 1213 and H2 deadlocks both report 40001
+    static boolean isDeadlock(SQLException e) {
+        for (SQLException ex = e; ex != null; ex = ex.getNextException()) {
+            String state = ex.getSQLState();
+            if ((state != null && state.startsWith("40")) || ex.getErrorCode() == 1213) return true;
+        }
+        return false;
+    }
+
+    // UPDATE products SET quantity = quantity - CASE productID WHEN ? THEN ? ... END
+    //   WHERE productID IN (?, ...) AND quantity >= CASE productID WHEN ? THEN ? ... END
+    private static String stockDecrementSql(int count) {
+        StringBuilder cases = new StringBuilder("CASE productID");
+        for (int i = 0; i < count; i++) cases.append(" WHEN ? THEN ?");
+        cases.append(" END");
+        return "UPDATE products SET quantity = quantity - " + cases
+                + " WHERE productID IN (" + placeholders(count) + ") AND quantity >= " + cases;
+    }
+
+    private static List<Integer> decrementIDs(List<Map.Entry<Integer, Double>> chunk) {
+        List<Integer> ids = new ArrayList<>();
+        for (Map.Entry<Integer, Double> e : chunk) ids.add(e.getKey());
+        return ids;
+    }
+
+    // Checks the password against the stored salted hash; plaintext rows from older versions are upgraded on success
+    // Timed including the hash check, which is most of a successful login; a wrong password is not counted as an error
     public User loadUser(String username, String password) {
-        String sql = "SELECT userID, username, userPassword, fullName, isManager FROM users WHERE username = ? AND userPassword = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        long start = System.nanoTime();
+        try {
+            User user = loadUserByUsername(username);
+            if (user == null || !PasswordHasher.verify(password, user.getPassword())) return null;
+
+            if (PasswordHasher.needsRehash(user.getPassword())) {
+                String hash = PasswordHasher.hash(password);
+                if (updatePasswordHash(user.getUserID(), hash)) {
+                    user.setPassword(hash);
+                }
+            }
+            return user;
+        } finally {
+            StoreMetrics.LOAD_USER.record(System.nanoTime() - start);
+        }
+    }
+
+    // Returns the user with their stored password hash, or null if there is no such user
+    public User loadUserByUsername(String username) {
+        String sql = "SELECT userID, username, userPassword, fullName, isManager FROM users WHERE username = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, username);
-            ps.setString(2, password);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) return null;
                 User user = new User();
@@ -183,7 +804,7 @@ public class DataAdapter {
                 user.setUsername(rs.getString("username"));
                 user.setPassword(rs.getString("userPassword"));
                 user.setFullName(rs.getString("fullName"));
-                // Note: User class currently has no setter for isManager
+                user.setManager(rs.getBoolean("isManager"));
                 return user;
             }
         } catch (SQLException e) {
@@ -192,4 +813,18 @@ public class DataAdapter {
             return null;
         }
     }
+
+    public boolean updatePasswordHash(int userID, String hash) {
+        String sql = "UPDATE users SET userPassword = ? WHERE userID = ?";
+        try (Connection connection = pool.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, hash);
+            ps.setInt(2, userID);
+            return ps.executeUpdate() == 1;
+        } catch (SQLException e) {
+            System.out.println("Database access error!");
+            e.printStackTrace();
+            return false;
+        }
+    }
 }
@@ -0,0 +1,204 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Collects orders from many terminals and writes them in groups, one transaction per group.
+ * The writer thread waits for the first order, then keeps draining the queue until it has maxBatch orders
+ * or lingerMillis have passed, and writes the whole group with batched inserts and a single commit.
+ * If the group fails, it is replayed order by order behind savepoints so one bad order only fails its own future.
+ */
+public class GroupCommitOrderWriter implements AutoCloseable {
+
+    private final DataAdapter dataAdapter;
+    private final int maxBatch;
+    private final long lingerMillis;
+    private final long offerTimeoutMillis;
+
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public GroupCommitOrderWriter(DataAdapter dataAdapter, int maxBatch, long lingerMillis,
+                                  int queueCapacity, long offerTimeoutMillis) {
+        if (maxBatch < 1) throw new IllegalArgumentException("maxBatch must be at least 1");
+        this.dataAdapter = dataAdapter;
+        this.maxBatch = maxBatch;
+        this.lingerMillis = lingerMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        writer = new Thread(this::run, "group-commit-order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues an order for writing. The future completes with the order's ID once its group has committed.
+     * When the queue stays full for longer than the offer timeout, the future fails with a
+     * RejectedExecutionException so callers feel the backpressure instead of piling up work.
+     */
+    public CompletableFuture<Integer> submit(Order order) {
+        Pending pending = new Pending(order);
+        // Timed as the terminal sees it: queueing, linger and the group's transaction
+        long start = System.nanoTime();
+        pending.future.whenComplete((id, ex) -> StoreMetrics.SAVE_ORDER.record(System.nanoTime() - start, ex != null));
+        if (!running) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Order writer is closed"));
+            return pending.future;
+        }
+        try {
+            if (!queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                pending.future.completeExceptionally(new RejectedExecutionException(
+                        "Order queue is full (" + queue.size() + " waiting)"));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(ex);
+        }
+        return pending.future;
+    }
+
+    public int getQueuedOrders() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Pending> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (group.size() < maxBatch) {
+                    // Take whatever is already waiting without blocking, then wait out the rest of the linger time
+                    if (queue.drainTo(group, maxBatch - group.size()) > 0) continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    group.add(next);
+                }
+
+                writeGroup(group);
+            } catch (InterruptedException ex) {
+                if (!running) break;
+            } catch (RuntimeException ex) {
+                for (Pending p : group) p.future.completeExceptionally(ex);
+            } finally {
+                group.clear();
+            }
+        }
+
+        // Anything still queued after close cannot be written anymore
+        Pending left;
+        while ((left = queue.poll()) != null) {
+            left.future.completeExceptionally(new RejectedExecutionException("Order writer is closed"));
+        }
+    }
+
+    private void writeGroup(List<Pending> group) {
+        List<Order> orders = new ArrayList<>(group.size());
+        int[] originalIDs = new int[group.size()];
+        for (int i = 0; i < group.size(); i++) {
+            orders.add(group.get(i).order);
+            originalIDs[i] = group.get(i).order.getOrderID();
+        }
+
+        try (Connection connection = dataAdapter.getConnectionPool().getConnection()) {
+            long transactionStart = System.nanoTime();
+            connection.setAutoCommit(false);
+            try {
+                dataAdapter.writeOrders(connection, orders);
+                connection.commit();
+                StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, false);
+                for (Pending p : group) {
+                    dataAdapter.orderCommitted(p.order);
+                    p.future.complete(p.order.getOrderID());
+                }
+                return;
+            } catch (SQLException ex) {
+                connection.rollback();
+                StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, true);
+                // A stock failure in a bigger group is counted once the order that caused it is found below
+                if (group.size() == 1 || DataAdapter.isDeadlock(ex)) dataAdapter.countOrderFailure(ex);
+                // Generated IDs from the failed attempt are gone with the rollback
+                for (int i = 0; i < group.size(); i++) group.get(i).order.setOrderID(originalIDs[i]);
+                if (group.size() == 1) {
+                    group.get(0).future.completeExceptionally(ex);
+                    return;
+                }
+            }
+
+            writeIsolated(connection, group, originalIDs);
+        } catch (SQLException ex) {
+            // No connection, or the transaction could not be finished: every order not answered yet fails, and
+            // gives back an ID generated by the rolled-back attempt, or a retry would insert it as an explicit ID
+            System.out.println("Database access error!");
+            ex.printStackTrace();
+            for (int i = 0; i < group.size(); i++) {
+                Pending p = group.get(i);
+                if (p.future.isDone()) continue;
+                p.order.setOrderID(originalIDs[i]);
+                p.future.completeExceptionally(ex);
+            }
+        }
+    }
+
+    // Replays the group one order at a time; each order sits behind its own savepoint, still in one transaction
+    private void writeIsolated(Connection connection, List<Pending> group, int[] originalIDs) throws SQLException {
+        long transactionStart = System.nanoTime();
+        List<Pending> written = new ArrayList<>();
+        for (int i = 0; i < group.size(); i++) {
+            Pending p = group.get(i);
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                dataAdapter.writeOrder(connection, p.order);
+                connection.releaseSavepoint(savepoint);
+                written.add(p);
+            } catch (SQLException ex) {
+                connection.rollback(savepoint);
+                dataAdapter.countOrderFailure(ex);
+                p.order.setOrderID(originalIDs[i]);
+                p.future.completeExceptionally(ex);
+            }
+        }
+        try {
+            connection.commit();
+        } catch (SQLException ex) {
+            StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, true);
+            dataAdapter.countOrderFailure(ex);
+            try { connection.rollback(); } catch (SQLException ignore) {}
+            throw ex;       // writeGroup fails the written orders and resets their IDs
+        }
+        StoreMetrics.ORDER_TRANSACTION.record(System.nanoTime() - transactionStart, false);
+        for (Pending p : written) {
+            dataAdapter.orderCommitted(p.order);
+            p.future.complete(p.order.getOrderID());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Pending {
+        final Order order;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        Pending(Order order) {
+            this.order = order;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.CompletionException;
 
 public class LoginController implements ActionListener {
     private LoginScreen loginScreen;
@@ -14,19 +15,33 @@ public class LoginController implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         if (e.getSource() == loginScreen.getBtnLogin()) {
             String username = loginScreen.getTxtUserName().getText().trim();
-            String password = loginScreen.getTxtPassword().getText().trim();
+            String password = new String(loginScreen.getTxtPassword().getPassword());
 
-            System.out.println("Login with username = " + username + " and password = " + password);
-            User user = Application.getInstance().getDataAdapter().loadUser(username, password);
-
-            if (user == null) {
-                JOptionPane.showMessageDialog(null, "This user does not exist!");
-            }
-            else {
-                Application.getInstance().setCurrentUser(user);
-                this.loginScreen.setVisible(false);
-                Application.getInstance().getMainScreen().setVisible(true);
-            }
+            System.out.println("Login attempt for username = " + username);
+            // Check the credentials off the event dispatch thread so the window stays responsive
+            loginScreen.getBtnLogin().setEnabled(false);
+            Application app = Application.getInstance();
+            app.getAsyncDataService().submit(() -> app.getStoreService().login(username, password))
+                    .whenCompleteAsync((session, ex) -> {
+                        loginScreen.getBtnLogin().setEnabled(true);
+                        Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        if (cause instanceof AuthService.RateLimitedException) {
+                            long seconds = (((AuthService.RateLimitedException) cause).getRetryAfterMillis() + 999) / 1000;
+                            JOptionPane.showMessageDialog(null, "Too many login attempts. Please try again in " + seconds + " seconds.");
+                        }
+                        else if (cause != null) {
+                            JOptionPane.showMessageDialog(null, "Login failed: " + cause.getMessage());
+                        }
+                        else if (session == null) {
+                            JOptionPane.showMessageDialog(null, "Wrong username or password!");
+                        }
+                        else {
+                            loginScreen.getTxtPassword().setText("");
+                            app.setCurrentSession(session);
+                            this.loginScreen.setVisible(false);
+                            app.getMainScreen().setVisible(true);
+                        }
+                    }, AsyncDataService.edt());
         }
     }
 }
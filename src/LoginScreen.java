@@ -2,14 +2,14 @@ import javax.swing.*;
 
 public class LoginScreen extends JFrame {
     private JTextField txtUserName = new JTextField(10);
-    private JTextField txtPassword = new JTextField(10);
+    private JPasswordField txtPassword = new JPasswordField(10);
     private JButton    btnLogin    = new JButton("Login");
 
     public JButton getBtnLogin() {
         return btnLogin;
     }
 
-    public JTextField getTxtPassword() {
+    public JPasswordField getTxtPassword() {
         return txtPassword;
     }
 
@@ -7,6 +7,8 @@ public class MainScreen extends JFrame {
 
     private JButton btnBuy = new JButton("Order View");
     private JButton btnSell = new JButton("Product View");
+    private JButton btnBrowse = new JButton("Browse Products");
+    private JButton btnReports = new JButton("Sales Reports");
 
     public MainScreen() {
         this.setLayout(new BoxLayout(this.getContentPane(), BoxLayout.Y_AXIS));
@@ -15,6 +17,8 @@ public class MainScreen extends JFrame {
 
         btnSell.setPreferredSize(new Dimension(120, 50));
         btnBuy.setPreferredSize(new Dimension(120, 50));
+        btnBrowse.setPreferredSize(new Dimension(140, 50));
+        btnReports.setPreferredSize(new Dimension(140, 50));
 
 
         JLabel title = new JLabel("Store Management System");
@@ -26,6 +30,11 @@ public class MainScreen extends JFrame {
         JPanel panelButton = new JPanel();
         panelButton.add(btnBuy);
         panelButton.add(btnSell);
+        panelButton.add(btnBrowse);
+        // Only managers see sales figures
+        User user = Application.getInstance().getCurrentUser();
+        btnReports.setVisible(user != null && user.isManager());
+        panelButton.add(btnReports);
 
         this.getContentPane().add(panelButton);
 
@@ -40,6 +49,23 @@ public class MainScreen extends JFrame {
                 Application.getInstance().getProductView().setVisible(true);
             }
         });
+
+        btnBrowse.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                Application app = Application.getInstance();
+                boolean firstOpen = !app.getProductBrowserView().isVisible() && app.getProductBrowserView().getProducts().getRowCount() == 0;
+                app.getProductBrowserView().setVisible(true);
+                if (firstOpen) app.getProductBrowserController().refresh();
+            }
+        });
+
+        btnReports.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                Application app = Application.getInstance();
+                app.getSalesReportView().setVisible(true);
+                app.getSalesReportController().refresh();
+            }
+        });
     }
 
 
@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends the metrics of the last period to a local file on a background thread, one block per period with a
+ * line per operation that was called in it. Percentiles are for that period only, so a slow afternoon is not
+ * averaged away by a quiet morning.
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+
+    private final LatencyHistogram.Snapshot[] previous;
+    private final long[] previousErrors;
+
+    public MetricsReporter(Path file, long periodMillis) {
+        this.file = file;
+        List<OperationMetrics> all = StoreMetrics.all();
+        previous = new LatencyHistogram.Snapshot[all.size()];
+        previousErrors = new long[all.size()];
+        for (int i = 0; i < all.size(); i++) {
+            previous[i] = all.get(i).snapshot();
+            previousErrors[i] = all.get(i).getErrors();
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::report, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Writes the period so far; also called on close so the last partial period is not lost
+    public synchronized void report() {
+        List<OperationMetrics> all = StoreMetrics.all();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < all.size(); i++) {
+            OperationMetrics metrics = all.get(i);
+            LatencyHistogram.Snapshot current = metrics.snapshot();
+            long errors = metrics.getErrors();
+            LatencyHistogram.Snapshot interval = current.since(previous[i]);
+            if (interval.getCount() > 0) {
+                StoreMetrics.appendLine(sb, metrics.getName(), interval, errors - previousErrors[i]);
+            }
+            previous[i] = current;
+            previousErrors[i] = errors;
+        }
+        if (sb.length() == 0) return;
+
+        try {
+            Files.write(file, ("# " + LocalDateTime.now() + System.lineSeparator() + sb).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            System.out.println("Could not write metrics to " + file + ": " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        report();
+    }
+}
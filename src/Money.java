@@ -0,0 +1,65 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money helpers. Amounts are whole cents in a long, which matches the DECIMAL(10,2) columns exactly
+ * and keeps sums free of binary floating-point drift. Quantities stay double (they can be fractional, e.g. 1.25 kg)
+ * and are counted to a thousandth of a unit when priced.
+ */
+public final class Money {
+
+    private static final long QUANTITY_SCALE = 1000;
+
+    private Money() {
+    }
+
+    // Nearest cent of an amount that came in as a double, e.g. a price read from the UI or the products table
+    public static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    // Only at the JDBC boundary, once per value written
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    public static long fromDecimal(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Cost of quantity units at unitCents each, rounded half up to the cent.
+     */
+    public static long lineCents(long unitCents, double quantity) {
+        long milliUnits = Math.round(quantity * QUANTITY_SCALE);
+        return divideRounded(Math.multiplyExact(unitCents, milliUnits), QUANTITY_SCALE);
+    }
+
+    /**
+     * amount * basisPoints / 10000, rounded half up; 825 basis points is an 8.25% rate.
+     */
+    public static long percentOf(long cents, int basisPoints) {
+        return divideRounded(Math.multiplyExact(cents, (long) basisPoints), 10_000);
+    }
+
+    // Half-up (away from zero) integer division
+    static long divideRounded(long value, long divisor) {
+        long half = divisor / 2;
+        return value >= 0 ? (value + half) / divisor : -((-value + half) / divisor);
+    }
+
+    // "1234.50", "-0.05"
+    public static String format(long cents) {
+        StringBuilder sb = new StringBuilder(12);
+        if (cents < 0) sb.append('-');
+        long abs = Math.abs(cents);
+        sb.append(abs / 100).append('.');
+        long fraction = abs % 100;
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction).toString();
+    }
+}
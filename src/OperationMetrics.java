@@ -0,0 +1,69 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count, failure count and latency distribution of one operation, e.g. DataAdapter.saveOrder.
+ * Callers take System.nanoTime() before the work and pass the elapsed time to record; nothing is allocated.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long elapsedNanos) {
+        latency.record(elapsedNanos);
+    }
+
+    // Failed calls are timed too, so slow failures (timeouts) still show up in the percentiles
+    public void record(long elapsedNanos, boolean failed) {
+        latency.record(elapsedNanos);
+        if (failed) errors.increment();
+    }
+
+    public LatencyHistogram.Snapshot snapshot() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public long getCount() {
+        return latency.snapshot().getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.snapshot().getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.snapshot().getValueAtQuantile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.snapshot().getValueAtQuantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.snapshot().getValueAtQuantile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.snapshot().getMaxNanos() / 1000.0;
+    }
+}
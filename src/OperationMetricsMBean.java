@@ -0,0 +1,10 @@
+// JMX view of one OperationMetrics; times are in microseconds since the application started
+public interface OperationMetricsMBean {
+    long getCount();
+    long getErrors();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP99Micros();
+    double getP999Micros();
+    double getMaxMicros();
+}
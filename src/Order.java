@@ -1,19 +1,19 @@
-import java.sql.Date;
+import java.util.AbstractList;
 import java.util.List;
-import java.util.ArrayList;
 
 
 public class Order {
     private int orderID;
     private int buyerID;
-    private double totalCost;
-    private double totalTax;
+    // Whole cents; see Money
+    private long totalCostCents;
+    private long totalTaxCents;
     private String date;
 
-    private List<OrderLine> lines;
+    // One line per product; adding a product that is already in the order merges into its line
+    private final OrderLines lines = new OrderLines();
 
     public Order() {
-        lines = new ArrayList<>();
     }
 
     public String getDate() {
@@ -25,19 +25,35 @@ public class Order {
     }
 
     public double getTotalCost() {
-        return totalCost;
+        return Money.toDouble(totalCostCents);
     }
 
     public void setTotalCost(double totalCost) {
-        this.totalCost = totalCost;
+        this.totalCostCents = Money.cents(totalCost);
+    }
+
+    public long getTotalCostCents() {
+        return totalCostCents;
+    }
+
+    public void setTotalCostCents(long totalCostCents) {
+        this.totalCostCents = totalCostCents;
     }
 
     public double getTotalTax() {
-        return totalTax;
+        return Money.toDouble(totalTaxCents);
     }
 
     public void setTotalTax(double totalTax) {
-        this.totalTax = totalTax;
+        this.totalTaxCents = Money.cents(totalTax);
+    }
+
+    public long getTotalTaxCents() {
+        return totalTaxCents;
+    }
+
+    public void setTotalTaxCents(long totalTaxCents) {
+        this.totalTaxCents = totalTaxCents;
     }
 
     public int getOrderID() {
@@ -57,14 +73,39 @@ public class Order {
     }
 
     public void addLine(OrderLine line) {
-        lines.add(line);
+        lines.merge(line.getProductID(), line.getQuantity(), line.getUnitPriceCents(), line.getCostCents(), line.getTaxCents());
     }
 
     public void removeLine(OrderLine line) {
-        lines.remove(line);
+        lines.remove(line.getProductID());
     }
 
-    public List<OrderLine> getLines() {
+    // A copy of the product's line, or null if it is not in the order
+    public OrderLine getLine(int productID) {
+        int row = lines.indexOf(productID);
+        return row < 0 ? null : lines.toLine(row, orderID);
+    }
+
+    // Primitive access to the lines in the order they were added; used by the pricer and the order writers
+    public OrderLines getLineItems() {
         return lines;
     }
+
+    /**
+     * Read-only view of the lines in insertion order. Each element is a copy made when it is read,
+     * so hot paths should go through getLineItems instead.
+     */
+    public List<OrderLine> getLines() {
+        return new AbstractList<OrderLine>() {
+            @Override
+            public OrderLine get(int index) {
+                return lines.toLine(index, orderID);
+            }
+
+            @Override
+            public int size() {
+                return lines.size();
+            }
+        };
+    }
 }
@@ -1,5 +1,4 @@
 import java.awt.event.ActionEvent;
-import java.time.LocalDateTime;
 import java.awt.event.ActionListener;
 import javax.swing.*;
 //import joptionPane;
@@ -13,6 +12,7 @@ public class OrderController implements ActionListener {
 
         view.getBtnAdd().addActionListener(this);
         view.getBtnPay().addActionListener(this);
+        view.getBtnRemove().addActionListener(this);
 
         order = new Order();
 
@@ -25,73 +25,136 @@ public class OrderController implements ActionListener {
         else
         if (e.getSource() == view.getBtnPay())
             makeOrder();
+        else
+        if (e.getSource() == view.getBtnRemove())
+            removeProduct();
     }
 
     private void makeOrder() {
-        if (order.getLines().isEmpty()) {
+        if (order.getLineItems().isEmpty()) {
             JOptionPane.showMessageDialog(null, "No items in the order.");
             return;
         }
 
-        // Set buyer if logged in
-        User current = Application.getInstance().getCurrentUser();
-        if (current != null) {
-            order.setBuyerID(current.getUserID());
+        // Totals and tax are kept up to date by the pricer as lines change; the buyer is whoever is logged in.
+        // The sale is done once it is in the local order journal, which sends it on to the database by itself,
+        // so checkout neither waits for nor needs the database. The buttons stay disabled until it is on disk.
+        StoreService store = Application.getInstance().getStoreServiceIfReady();
+        if (store == null) {
+            JOptionPane.showMessageDialog(null, "Still connecting to the database. Please try again in a moment.");
+            return;
         }
+        User current = Application.getInstance().getCurrentUser();
+        Order submitted = order;
+        setBusy(true);
+        store.checkout(submitted, current)
+                .whenCompleteAsync((saleKey, ex) -> {
+                    setBusy(false);
+                    if (ex == null) {
+                        JOptionPane.showMessageDialog(null, "Order saved successfully. Receipt: " + saleKey);
+                        // reset UI for a new order
+                        this.view.clearRows();
+                        this.view.getLabTotal().setText("Total: $");
+                        // Create a fresh order for next transaction
+                        this.order = new Order();
+                    } else {
+                        // Only happens if the journal cannot be written; our holds stay until they expire
+                        System.out.println("Failed to save order: " + ex.getMessage());
+                        JOptionPane.showMessageDialog(null, "Failed to save order. See logs for details.");
+                    }
+                }, AsyncDataService.edt());
 
-        // Set date/time and simple tax (adjust rate if needed)
-        order.setDate(LocalDateTime.now().toString());
-        double taxRate = 0.0; // set to e.g., 0.09 for 9% if you need tax
-        order.setTotalTax(order.getTotalCost() * taxRate);
-
-        boolean ok = Application.getInstance().getDataAdapter().saveOrder(order);
-        if (ok) {
-            JOptionPane.showMessageDialog(null, "Order saved successfully. OrderID: " + order.getOrderID());
-            // reset UI for a new order
-            this.view.getLabTotal().setText("Total: $");
-            // Create a fresh order for next transaction
-            this.order = new Order();
-        } else {
-            JOptionPane.showMessageDialog(null, "Failed to save order. See logs for details.");
-        }
+    }
 
+    private void setBusy(boolean busy) {
+        view.getBtnAdd().setEnabled(!busy);
+        view.getBtnPay().setEnabled(!busy);
+        view.getBtnRemove().setEnabled(!busy);
     }
 
     private void addProduct() {
-        String id = JOptionPane.showInputDialog("Enter ProductID: ");
-        Product product = Application.getInstance().getDataAdapter().loadProduct(Integer.parseInt(id));
-        if (product == null) {
-            JOptionPane.showMessageDialog(null, "This product does not exist!");
-            return;
-        }
+        Integer id = ProductSearchDialog.pickProduct(view);
+        if (id == null) return;
+        setBusy(true);
+        Application.getInstance().getAsyncDataService().loadProduct(id)
+                .whenCompleteAsync((product, ex) -> {
+                    setBusy(false);
+                    if (product == null) {
+                        JOptionPane.showMessageDialog(null, "This product does not exist!");
+                        return;
+                    }
+                    addProduct(product);
+                }, AsyncDataService.edt());
+    }
 
+    private void addProduct(Product product) {
         double quantity = Double.parseDouble(JOptionPane.showInputDialog(null,"Enter quantity: "));
 
-        if (quantity < 0 || quantity > product.getQuantity()) {
+        if (quantity < 0) {
             JOptionPane.showMessageDialog(null, "This quantity is not valid!");
             return;
         }
 
-        OrderLine line = new OrderLine();
-        line.setOrderID(this.order.getOrderID());
-        line.setProductID(product.getProductID());
-        line.setQuantity(quantity);
-        line.setCost(quantity * product.getPrice());
-        order.getLines().add(line);
-        order.setTotalCost(order.getTotalCost() + line.getCost());
-
-
+        // Hold the stock now so another terminal cannot sell the same units before this order is paid.
+        // The reservation may have to read stock from the database, so it runs in the background too;
+        // the buttons stay disabled meanwhile, so nothing else touches the order.
+        Order current = order;
+        setBusy(true);
+        Application.getInstance().getAsyncDataService()
+                .submit(() -> Application.getInstance().getStoreService().addToOrder(current, product, quantity))
+                .whenCompleteAsync((line, ex) -> {
+                    setBusy(false);
+                    if (ex != null) {
+                        JOptionPane.showMessageDialog(null, "This quantity is not valid!");
+                        return;
+                    }
+                    showLine(current, product, line);
+                }, AsyncDataService.edt());
+    }
 
+    // Adding a product that is already in the basket increased its quantity, so its row may already be there
+    private void showLine(Order order, Product product, OrderLine line) {
         Object[] row = new Object[5];
         row[0] = line.getProductID();
         row[1] = product.getName();
-        row[2] = product.getPrice();
+        row[2] = Money.format(line.getUnitPriceCents());
         row[3] = line.getQuantity();
-        row[4] = line.getCost();
+        row[4] = Money.format(line.getCostCents());
 
-        this.view.addRow(row);
-        this.view.getLabTotal().setText("Total: $" + order.getTotalCost());
+        int existing = this.view.findRow(line.getProductID());
+        if (existing >= 0) {
+            this.view.updateRow(existing, row);
+        } else {
+            this.view.addRow(row);
+        }
+        showTotal(order);
         this.view.invalidate();
     }
 
-}
\ No newline at end of file
+    private void removeProduct() {
+        int row = view.getTblItems().getSelectedRow();
+        if (row < 0) {
+            JOptionPane.showMessageDialog(null, "Select the item to remove.");
+            return;
+        }
+        int productID = (Integer) view.getTblItems().getModel().getValueAt(row, 0);
+        StoreService store = Application.getInstance().getStoreServiceIfReady();
+        if (store == null) {
+            JOptionPane.showMessageDialog(null, "Still connecting to the database. Please try again in a moment.");
+            return;
+        }
+        // Also lets other terminals have the stock this line was holding
+        if (store.removeFromOrder(order, productID) == null) return;
+        view.removeRow(row);
+        showTotal(order);
+    }
+
+    private void showTotal(Order order) {
+        String text = "Total: $" + Money.format(order.getTotalCostCents());
+        if (order.getTotalTaxCents() != 0) {
+            text += "  (tax $" + Money.format(order.getTotalTaxCents()) + ")";
+        }
+        this.view.getLabTotal().setText(text);
+    }
+
+}
@@ -0,0 +1,536 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead log of sales, so a checkout does not wait for the database and keeps working while it is down.
+ * A sale is appended as one checksummed record and counts as made once the journal is on disk; a flusher thread
+ * forces the file once for all the appends that arrived while the previous force ran (group fsync).
+ * After startReplay() a replayer thread writes the records to the database in journal order, retrying with backoff
+ * while it cannot be reached. Each sale carries a random key that is stored with its order, so a sale replayed
+ * twice is only stored once. Only connection failures and timeouts are retried; a sale the database refuses for
+ * any other reason (lack of stock, a deleted product, a constraint) is moved to a rejected-sales file, so it
+ * cannot hold up the sales journaled after it.
+ *
+ * A record is an int payload length, the payload's CRC32 and the payload. On open, the file is cut back to the last
+ * complete record with a valid checksum: anything after it was torn by a crash before it was acknowledged.
+ * How far replay got is kept in a checkpoint file that is written without forcing; if it lags after a crash,
+ * a few sales are offered to the database again and recognised by their keys. Only when the journal is emptied
+ * is the checkpoint forced (back to 0) first, since a stale offset that outlives the old records could otherwise
+ * skip the sales appended after them; a checkpoint past the end of the file is ignored.
+ */
+public class OrderJournal implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final byte FORMAT_VERSION = 1;
+    // No real sale comes near this; a bigger length can only come from a torn header
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private final Path file;
+    private final Path checkpointFile;
+    private final Path rejectedFile;
+    private final DataAdapter dataAdapter;
+    private final StockReservationService reservations;
+    private final long compactBytes;
+
+    private final FileChannel channel;
+    private final FileChannel checkpoint;
+
+    // Guarded by this. replayed <= durable <= end; waiters are in file order
+    private long end;
+    private long durable;
+    private long replayed;
+    private int pendingSales;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private IOException failure;
+    private boolean running = true;
+
+    private final Thread flusher;
+    private final Thread replayer;
+
+    private final LongAdder appendedSales = new LongAdder();
+    private final LongAdder replayedSales = new LongAdder();
+    private final LongAdder rejectedSales = new LongAdder();
+    private final LongAdder forces = new LongAdder();
+
+    /**
+     * Opens (or creates) the journal at file, recovering what a crash left behind. The checkpoint and rejected
+     * sales live next to it, with .checkpoint and .rejected appended to its name. Once replay has caught up and
+     * the file is at least compactBytes long, it is emptied. reservations may be null.
+     */
+    public OrderJournal(Path file, DataAdapter dataAdapter, StockReservationService reservations, long compactBytes)
+            throws IOException {
+        this.file = file;
+        this.checkpointFile = Paths.get(file + ".checkpoint");
+        this.rejectedFile = Paths.get(file + ".rejected");
+        this.dataAdapter = dataAdapter;
+        this.reservations = reservations;
+        this.compactBytes = compactBytes;
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        checkpoint = FileChannel.open(checkpointFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        recover();
+
+        flusher = new Thread(this::flushLoop, "order-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        replayer = new Thread(this::replayLoop, "order-journal-replayer");
+        replayer.setDaemon(true);
+    }
+
+    // Scans the whole file once, keeping every record that checks out and cutting off a torn tail
+    private void recover() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long checkpointAt = readCheckpoint();
+        boolean checkpointOnRecord = checkpointAt == 0;
+        int records = 0;
+        int after = 0;
+        while (true) {
+            byte[] payload = readPayload(position, size);
+            if (payload == null) break;
+            position += HEADER_BYTES + payload.length;
+            records++;
+            if (position == checkpointAt) checkpointOnRecord = true;
+            else if (position > checkpointAt) after++;
+        }
+        if (position < size) {
+            System.out.println("Order journal: dropping " + (size - position) + " bytes of an incomplete write at the end of " + file);
+            channel.truncate(position);
+            channel.force(false);
+        }
+        // A checkpoint past the end is left over from before the journal was emptied, and one between records
+        // cannot be trusted either; replaying from the start is always safe
+        if (checkpointAt > position || !checkpointOnRecord) {
+            checkpointAt = 0;
+            after = records;
+        }
+        end = durable = position;
+        replayed = checkpointAt;
+        pendingSales = after;
+        if (after > 0) System.out.println("Order journal: " + after + " sales from an earlier run still have to reach the database");
+    }
+
+    /**
+     * Records the order as a sale. The future completes with the sale's key once the record is on disk, or
+     * exceptionally if the journal cannot be written. The order is copied, so it may change afterwards.
+     */
+    public CompletableFuture<String> append(Order order) {
+        String saleKey = UUID.randomUUID().toString();
+        ByteBuffer record;
+        try {
+            record = encode(saleKey, order);
+        } catch (IOException e) {
+            return failed(e);
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (failure != null) return failed(failure);
+            if (!running) return failed(new IOException("Order journal is closed"));
+            try {
+                long position = end;
+                while (record.hasRemaining()) position += channel.write(record, position);
+                end = position;
+            } catch (IOException e) {
+                // Part of the record may be in the file; nothing more can be appended after it
+                failure = e;
+                return failed(e);
+            }
+            waiters.add(new Waiter(end, saleKey, future));
+            pendingSales++;
+            appendedSales.increment();
+            notifyAll();
+        }
+        return future;
+    }
+
+    // Starts writing journaled sales to the database; call once its schema is known to be up to date
+    public synchronized void startReplay() {
+        if (running && replayer.getState() == Thread.State.NEW) replayer.start();
+    }
+
+    // Sales on disk that have not reached the database yet
+    public synchronized int getPendingSales() {
+        return pendingSales;
+    }
+
+    public long getAppendedSales() {
+        return appendedSales.sum();
+    }
+
+    public long getReplayedSales() {
+        return replayedSales.sum();
+    }
+
+    // Sales the database refused (lack of stock or any other permanent error); they are in the rejected-sales file
+    public long getRejectedSales() {
+        return rejectedSales.sum();
+    }
+
+    // Number of fsyncs; appended sales divided by this is the average group size
+    public long getForces() {
+        return forces.sum();
+    }
+
+    public Path getRejectedFile() {
+        return rejectedFile;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            synchronized (this) {
+                while (running && failure == null && durable == end) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (failure != null || durable == end) break;
+                target = end;
+            }
+            IOException error = null;
+            try {
+                channel.force(false);
+                forces.increment();
+            } catch (IOException e) {
+                error = e;
+            }
+            List<Waiter> done = new ArrayList<>();
+            synchronized (this) {
+                if (error != null) {
+                    failure = error;
+                    done.addAll(waiters);
+                    waiters.clear();
+                } else {
+                    durable = target;
+                    while (!waiters.isEmpty() && waiters.peekFirst().position <= target) done.add(waiters.pollFirst());
+                }
+                notifyAll();
+            }
+            // Outside the lock: callers' continuations run on this thread
+            for (Waiter w : done) {
+                if (error == null) w.future.complete(w.saleKey);
+                else w.future.completeExceptionally(error);
+            }
+        }
+        List<Waiter> abandoned;
+        IOException error;
+        synchronized (this) {
+            abandoned = new ArrayList<>(waiters);
+            waiters.clear();
+            error = failure != null ? failure : new IOException("Order journal is closed");
+        }
+        for (Waiter w : abandoned) w.future.completeExceptionally(error);
+    }
+
+    private void replayLoop() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        boolean offline = false;
+        while (true) {
+            long position;
+            synchronized (this) {
+                while (running && replayed == durable) {
+                    compactIfDrained();
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) return;
+                position = replayed;
+            }
+
+            byte[] payload;
+            Sale sale;
+            try {
+                payload = readPayload(position, Long.MAX_VALUE);
+                if (payload == null) throw new IOException("Unreadable record at " + position + " in " + file);
+                sale = decode(payload);
+            } catch (IOException e) {
+                // Only durable records are read, so this is a disk problem; stop rather than skip a sale
+                System.out.println("Order journal: replay stopped! " + e.getMessage());
+                e.printStackTrace();
+                return;
+            }
+
+            try {
+                dataAdapter.applyJournaledOrder(sale.order, sale.saleKey);
+                replayedSales.increment();
+                if (offline) {
+                    System.out.println("Order journal: database is reachable again, replaying sales");
+                    offline = false;
+                }
+                backoff = MIN_BACKOFF_MILLIS;
+            } catch (SQLException e) {
+                // Shutting down: the pool gives up on an interrupted borrow, which says nothing about the sale
+                if (Thread.currentThread().isInterrupted() || !isRunning()) return;
+                if (isTransient(e)) {
+                    if (!offline) {
+                        System.out.println("Database access error!");
+                        e.printStackTrace();
+                        System.out.println("Order journal: " + getPendingSales() + " sales will wait until the database is reachable");
+                        offline = true;
+                    }
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                    continue;
+                }
+                // Retrying would fail the same way forever and hold up every later sale
+                reject(sale, e);
+            }
+
+            synchronized (this) {
+                replayed = position + HEADER_BYTES + payload.length;
+                pendingSales--;
+            }
+            writeCheckpoint(position + HEADER_BYTES + payload.length);
+        }
+    }
+
+    private synchronized boolean isRunning() {
+        return running;
+    }
+
+    // Worth retrying: the database could not be reached or timed out. Anything else fails the same way every time
+    private static boolean isTransient(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException || t instanceof SQLRecoverableException
+                    || t instanceof SQLNonTransientConnectionException) return true;
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && state.startsWith("08")) return true;
+            }
+        }
+        return false;
+    }
+
+    // Caller holds the lock. Nothing is waiting to be replayed or forced, so the whole file can go
+    private void compactIfDrained() {
+        if (end < compactBytes || replayed != end || failure != null) return;
+        try {
+            // Checkpoint first: if we crash in between, everything is replayed and recognised by its key
+            putCheckpoint(0);
+            checkpoint.force(false);
+            channel.truncate(0);
+            channel.force(false);
+            end = durable = replayed = 0;
+        } catch (IOException e) {
+            // Harmless: the file just keeps growing until the next attempt
+            System.out.println("Order journal: could not compact " + file + ": " + e.getMessage());
+        }
+    }
+
+    // The sale already happened at the counter, so it is kept for a manager to settle instead of being dropped
+    private void reject(Sale sale, SQLException e) {
+        rejectedSales.increment();
+        StringBuilder sb = new StringBuilder();
+        sb.append(sale.saleKey).append('\t').append(sale.order.getDate())
+          .append('\t').append(sale.order.getBuyerID())
+          .append('\t').append(Money.format(sale.order.getTotalCostCents())).append('\t');
+        OrderLines lines = sale.order.getLineItems();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(lines.productID(i)).append(':').append(lines.quantity(i));
+        }
+        sb.append('\t').append(e.getMessage()).append(System.lineSeparator());
+        try {
+            Files.write(rejectedFile, sb.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        } catch (IOException io) {
+            System.out.println("Order journal: could not record rejected sale " + sb);
+            io.printStackTrace();
+        }
+        System.out.println("Order journal: sale " + sale.saleKey + " was refused by the database (" + e.getMessage()
+                + "), see " + rejectedFile);
+        // Our idea of these products' stock was wrong
+        if (reservations != null) {
+            for (int i = 0; i < lines.size(); i++) reservations.invalidate(lines.productID(i));
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        while (buf.hasRemaining()) {
+            if (checkpoint.read(buf, buf.position()) < 0) return 0;
+        }
+        buf.flip();
+        long value = buf.getLong();
+        return value < 0 ? 0 : value;
+    }
+
+    private void writeCheckpoint(long position) {
+        try {
+            putCheckpoint(position);
+        } catch (IOException e) {
+            // Only costs a few repeated (and recognised) sales after a restart
+            System.out.println("Order journal: could not write " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    private void putCheckpoint(long position) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putLong(position).flip();
+        while (buf.hasRemaining()) checkpoint.write(buf, buf.position());
+    }
+
+    // The record's payload, or null if there is no complete record with a valid checksum at position
+    private byte[] readPayload(long position, long limit) throws IOException {
+        limit = Math.min(limit, channel.size());
+        if (position + HEADER_BYTES > limit) return null;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, position);
+        header.flip();
+        int length = header.getInt();
+        int crc = header.getInt();
+        if (length <= 0 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > limit) return null;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, position + HEADER_BYTES);
+        CRC32 check = new CRC32();
+        check.update(payload.array(), 0, length);
+        return (int) check.getValue() == crc ? payload.array() : null;
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + buf.position());
+            if (n < 0) throw new EOFException("Unexpected end of " + file);
+        }
+    }
+
+    private static ByteBuffer encode(String saleKey, Order order) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(saleKey);
+        out.writeInt(order.getBuyerID());
+        out.writeLong(order.getTotalCostCents());
+        out.writeLong(order.getTotalTaxCents());
+        out.writeUTF(order.getDate() == null ? "" : order.getDate());
+        OrderLines lines = order.getLineItems();
+        out.writeInt(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            out.writeInt(lines.productID(i));
+            out.writeDouble(lines.quantity(i));
+            out.writeLong(lines.unitPriceCents(i));
+            out.writeLong(lines.costCents(i));
+            out.writeLong(lines.taxCents(i));
+        }
+        out.flush();
+
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    private static Sale decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) throw new IOException("Unknown order journal record version " + version);
+        String saleKey = in.readUTF();
+        Order order = new Order();
+        order.setBuyerID(in.readInt());
+        order.setTotalCostCents(in.readLong());
+        order.setTotalTaxCents(in.readLong());
+        String date = in.readUTF();
+        order.setDate(date.isEmpty() ? null : date);
+        int count = in.readInt();
+        OrderLines lines = order.getLineItems();
+        for (int i = 0; i < count; i++) {
+            int productID = in.readInt();
+            double quantity = in.readDouble();
+            lines.set(lines.getOrAdd(productID), quantity, in.readLong(), in.readLong(), in.readLong());
+        }
+        return new Sale(saleKey, order);
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * Stops taking sales, waits for the ones already appended to reach the disk and stops the replayer.
+     * Unreplayed sales stay in the journal for the next start.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            flusher.join(5000);
+            // Let a replay in progress finish and record its checkpoint; interrupting a FileChannel closes it
+            if (replayer.getState() != Thread.State.NEW) {
+                replayer.join(1000);
+                replayer.interrupt();
+                replayer.join(5000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+            checkpoint.close();
+        } catch (IOException e) {
+            System.out.println("Order journal: error closing " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static class Waiter {
+        final long position;
+        final String saleKey;
+        final CompletableFuture<String> future;
+
+        Waiter(long position, String saleKey, CompletableFuture<String> future) {
+            this.position = position;
+            this.saleKey = saleKey;
+            this.future = future;
+        }
+    }
+
+    private static class Sale {
+        final String saleKey;
+        final Order order;
+
+        Sale(String saleKey, Order order) {
+            this.saleKey = saleKey;
+            this.order = order;
+        }
+    }
+}
@@ -3,7 +3,10 @@ public class OrderLine {
     private int productID;
     private int orderID;
     private double quantity;
-    private double cost;
+    // Whole cents; the unit price and tax are only known for lines priced in this session
+    private long costCents;
+    private long unitPriceCents;
+    private long taxCents;
 
     public double getQuantity() {
         return quantity;
@@ -14,11 +17,35 @@ public class OrderLine {
     }
 
     public double getCost() {
-        return cost;
+        return Money.toDouble(costCents);
     }
 
     public void setCost(double cost) {
-        this.cost = cost;
+        this.costCents = Money.cents(cost);
+    }
+
+    public long getCostCents() {
+        return costCents;
+    }
+
+    public void setCostCents(long costCents) {
+        this.costCents = costCents;
+    }
+
+    public long getUnitPriceCents() {
+        return unitPriceCents;
+    }
+
+    public void setUnitPriceCents(long unitPriceCents) {
+        this.unitPriceCents = unitPriceCents;
+    }
+
+    public long getTaxCents() {
+        return taxCents;
+    }
+
+    public void setTaxCents(long taxCents) {
+        this.taxCents = taxCents;
     }
 
     public int getOrderID() {
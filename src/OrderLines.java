@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/**
+ * The lines of one Order, at most one per product, stored column-wise in parallel primitive arrays in the order
+ * products were first added. A productID lookup goes through an open-addressing table (linear probing) that holds
+ * row numbers, so finding, merging into and updating a line is O(1) and nothing is boxed.
+ * A line costs about 44 bytes here against roughly 60 for an OrderLine object plus its list slot.
+ * Rows are addressed by index 0..size()-1; removing a line shifts the rows after it down by one.
+ */
+public class OrderLines {
+
+    private static final int FREE = 0;          // table entries hold row + 1
+
+    private int[] productIDs;
+    private double[] quantities;
+    private long[] unitPriceCents;
+    private long[] costCents;
+    private long[] taxCents;
+    private int size;
+
+    private int[] table;
+    private int mask;
+
+    public OrderLines() {
+        this(4);
+    }
+
+    public OrderLines(int expectedLines) {
+        int capacity = Math.max(4, expectedLines);
+        productIDs = new int[capacity];
+        quantities = new double[capacity];
+        unitPriceCents = new long[capacity];
+        costCents = new long[capacity];
+        taxCents = new long[capacity];
+        table = new int[tableSizeFor(capacity)];
+        mask = table.length - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Row of the product's line, or -1
+    public int indexOf(int productID) {
+        for (int i = hash(productID) & mask; ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == FREE) return -1;
+            if (productIDs[entry - 1] == productID) return entry - 1;
+        }
+    }
+
+    public boolean contains(int productID) {
+        return indexOf(productID) >= 0;
+    }
+
+    /**
+     * Returns the row of the product's line, appending an empty one (quantity and amounts 0) if there is none.
+     */
+    public int getOrAdd(int productID) {
+        int i = hash(productID) & mask;
+        for (; ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == FREE) break;
+            if (productIDs[entry - 1] == productID) return entry - 1;
+        }
+        if (size == productIDs.length) grow();
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length << 1);
+            return getOrAdd(productID);
+        }
+        int row = size++;
+        productIDs[row] = productID;
+        quantities[row] = 0;
+        unitPriceCents[row] = 0;
+        costCents[row] = 0;
+        taxCents[row] = 0;
+        table[i] = row + 1;
+        return row;
+    }
+
+    public void set(int row, double quantity, long unitPriceCents, long costCents, long taxCents) {
+        checkRow(row);
+        this.quantities[row] = quantity;
+        this.unitPriceCents[row] = unitPriceCents;
+        this.costCents[row] = costCents;
+        this.taxCents[row] = taxCents;
+    }
+
+    /**
+     * Adds to the product's line, creating it if needed: quantities and amounts are summed, and a non-zero unit
+     * price replaces the old one. Returns the row.
+     */
+    public int merge(int productID, double quantity, long unitPriceCents, long costCents, long taxCents) {
+        int row = getOrAdd(productID);
+        this.quantities[row] += quantity;
+        if (unitPriceCents != 0) this.unitPriceCents[row] = unitPriceCents;
+        this.costCents[row] += costCents;
+        this.taxCents[row] += taxCents;
+        return row;
+    }
+
+    // Returns false if the product had no line
+    public boolean remove(int productID) {
+        int row = indexOf(productID);
+        if (row < 0) return false;
+        int tail = size - row - 1;
+        System.arraycopy(productIDs, row + 1, productIDs, row, tail);
+        System.arraycopy(quantities, row + 1, quantities, row, tail);
+        System.arraycopy(unitPriceCents, row + 1, unitPriceCents, row, tail);
+        System.arraycopy(costCents, row + 1, costCents, row, tail);
+        System.arraycopy(taxCents, row + 1, taxCents, row, tail);
+        size--;
+        // Rows moved, so rebuild the table; lines are few and removal is a rare, interactive operation
+        rehash(table.length);
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+        Arrays.fill(table, FREE);
+    }
+
+    public int productID(int row) {
+        checkRow(row);
+        return productIDs[row];
+    }
+
+    public double quantity(int row) {
+        checkRow(row);
+        return quantities[row];
+    }
+
+    public long unitPriceCents(int row) {
+        checkRow(row);
+        return unitPriceCents[row];
+    }
+
+    public long costCents(int row) {
+        checkRow(row);
+        return costCents[row];
+    }
+
+    public long taxCents(int row) {
+        checkRow(row);
+        return taxCents[row];
+    }
+
+    // A detached copy of the row; changing it does not change the order
+    public OrderLine toLine(int row, int orderID) {
+        checkRow(row);
+        OrderLine line = new OrderLine();
+        line.setOrderID(orderID);
+        line.setProductID(productIDs[row]);
+        line.setQuantity(quantities[row]);
+        line.setUnitPriceCents(unitPriceCents[row]);
+        line.setCostCents(costCents[row]);
+        line.setTaxCents(taxCents[row]);
+        return line;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Line " + row + " of " + size);
+    }
+
+    private void grow() {
+        int capacity = productIDs.length * 2;
+        productIDs = Arrays.copyOf(productIDs, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        unitPriceCents = Arrays.copyOf(unitPriceCents, capacity);
+        costCents = Arrays.copyOf(costCents, capacity);
+        taxCents = Arrays.copyOf(taxCents, capacity);
+    }
+
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        mask = tableSize - 1;
+        for (int row = 0; row < size; row++) {
+            int i = hash(productIDs[row]) & mask;
+            while (table[i] != FREE) i = (i + 1) & mask;
+            table[i] = row + 1;
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int lines) {
+        int n = Integer.highestOneBit(Math.max(2, lines * 2 - 1)) << 1;
+        return Math.max(8, n);
+    }
+}
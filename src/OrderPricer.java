@@ -0,0 +1,99 @@
+/**
+ * Keeps an Order's totals current as lines are added, changed and removed.
+ * Every change only subtracts the old line's cost and tax and adds the new ones, all in long cents, so a basket
+ * of any size is updated in constant time and its total is always exactly the sum of its lines.
+ * Tax is worked out per line by a pluggable TaxRule.
+ */
+public class OrderPricer {
+
+    public interface TaxRule {
+        // Tax in cents for a line costing lineCents
+        long taxCents(int productID, long lineCents);
+    }
+
+    public static final TaxRule NO_TAX = (productID, lineCents) -> 0;
+
+    // The same rate on every line, rounded per line; 825 basis points is 8.25%
+    public static TaxRule flatRate(int basisPoints) {
+        return (productID, lineCents) -> Money.percentOf(lineCents, basisPoints);
+    }
+
+    private volatile TaxRule taxRule;
+
+    public OrderPricer(TaxRule taxRule) {
+        this.taxRule = taxRule;
+    }
+
+    public TaxRule getTaxRule() {
+        return taxRule;
+    }
+
+    // Applies to lines priced from now on; call reprice for orders already in progress
+    public void setTaxRule(TaxRule taxRule) {
+        this.taxRule = taxRule;
+    }
+
+    /**
+     * Adds quantity of a product at unitPrice. If the product is already in the order its quantity is increased
+     * instead, at the new unit price. Returns a copy of the line holding the product.
+     */
+    public OrderLine addLine(Order order, int productID, double unitPrice, double quantity) {
+        OrderLines lines = order.getLineItems();
+        int row = lines.getOrAdd(productID);
+        price(order, row, lines.quantity(row) + quantity, Money.cents(unitPrice));
+        return lines.toLine(row, order.getOrderID());
+    }
+
+    // Returns a copy of the changed line, or null if the product is not in the order
+    public OrderLine setQuantity(Order order, int productID, double quantity) {
+        OrderLines lines = order.getLineItems();
+        int row = lines.indexOf(productID);
+        if (row < 0) return null;
+        price(order, row, quantity, lines.unitPriceCents(row));
+        return lines.toLine(row, order.getOrderID());
+    }
+
+    // Returns a copy of the removed line, or null if the product was not in the order
+    public OrderLine removeLine(Order order, int productID) {
+        OrderLines lines = order.getLineItems();
+        int row = lines.indexOf(productID);
+        if (row < 0) return null;
+        OrderLine removed = lines.toLine(row, order.getOrderID());
+        order.setTotalCostCents(order.getTotalCostCents() - lines.costCents(row));
+        order.setTotalTaxCents(order.getTotalTaxCents() - lines.taxCents(row));
+        lines.remove(productID);
+        return removed;
+    }
+
+    /**
+     * Recomputes every line and both totals from scratch, e.g. after the tax rule changed.
+     * Lines without a known unit price (loaded from the database) keep their stored cost.
+     */
+    public void reprice(Order order) {
+        TaxRule rule = taxRule;
+        OrderLines lines = order.getLineItems();
+        long cost = 0;
+        long tax = 0;
+        for (int row = 0; row < lines.size(); row++) {
+            long unit = lines.unitPriceCents(row);
+            long lineCost = lines.costCents(row);
+            if (unit != 0 || lineCost == 0) lineCost = Money.lineCents(unit, lines.quantity(row));
+            long lineTax = rule.taxCents(lines.productID(row), lineCost);
+            lines.set(row, lines.quantity(row), unit, lineCost, lineTax);
+            cost += lineCost;
+            tax += lineTax;
+        }
+        order.setTotalCostCents(cost);
+        order.setTotalTaxCents(tax);
+    }
+
+    // Sets the line's quantity and price and moves the difference in cost and tax into the order totals
+    private void price(Order order, int row, double quantity, long unitCents) {
+        OrderLines lines = order.getLineItems();
+        long cost = Money.lineCents(unitCents, quantity);
+        long tax = taxRule.taxCents(lines.productID(row), cost);
+        order.setTotalCostCents(order.getTotalCostCents() - lines.costCents(row) + cost);
+        order.setTotalTaxCents(order.getTotalTaxCents() - lines.taxCents(row) + tax);
+        lines.set(row, quantity, unitCents, cost, tax);
+    }
+}
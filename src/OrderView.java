@@ -6,6 +6,7 @@ public class OrderView extends JFrame {
 
     private JButton btnAdd = new JButton("Add a new item");
     private JButton btnPay = new JButton("Finish and pay");
+    private JButton btnRemove = new JButton("Remove item");
 
     private DefaultTableModel items = new DefaultTableModel(); // store information for the table!
 
@@ -38,6 +39,7 @@ public class OrderView extends JFrame {
         JPanel panelButton = new JPanel();
         panelButton.setPreferredSize(new Dimension(400, 100));
         panelButton.add(btnAdd);
+        panelButton.add(btnRemove);
         panelButton.add(btnPay);
         this.getContentPane().add(panelButton);
 
@@ -51,6 +53,14 @@ public class OrderView extends JFrame {
         return btnPay;
     }
 
+    public JButton getBtnRemove() {
+        return btnRemove;
+    }
+
+    public JTable getTblItems() {
+        return tblItems;
+    }
+
     public JLabel getLabTotal() {
         return labTotal;
     }
@@ -58,4 +68,26 @@ public class OrderView extends JFrame {
     public void addRow(Object[] row) {
         items.addRow(row);
     }
+
+    // Row index of the line for the product, or -1
+    public int findRow(int productID) {
+        for (int i = 0; i < items.getRowCount(); i++) {
+            if (Integer.valueOf(productID).equals(items.getValueAt(i, 0))) return i;
+        }
+        return -1;
+    }
+
+    public void updateRow(int row, Object[] values) {
+        for (int c = 0; c < values.length; c++) {
+            items.setValueAt(values[c], row, c);
+        }
+    }
+
+    public void removeRow(int row) {
+        items.removeRow(row);
+    }
+
+    public void clearRows() {
+        items.setRowCount(0);
+    }
 }
@@ -0,0 +1,359 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies users, products, orders and orderLine from a legacy SQLite store.db into MySQL.
+ * Each table is split into key ranges that are copied in parallel, every worker on its own SQLite and MySQL
+ * connection, with upserts sent in batches and committed every commitSize rows.
+ * After each commit the worker records the last key it wrote in a checkpoint file next to the SQLite file,
+ * so an interrupted run picks up where it stopped. Re-copying a few rows after a crash is harmless because
+ * every write is an upsert.
+ *
+ * Usage: java ParallelMigrator <path-to-store.db> [workers] [batchSize] [commitSize]
+ */
+public class ParallelMigrator {
+
+    // Target tables in foreign key order, with the SQLite column names each target column may be found under
+    private static final TableSpec[] TABLES = {
+        new TableSpec("users", new String[] {"users", "user"}, "userID",
+            col("userID", true, "userid", "id"),
+            col("username", true, "username", "login", "name"),
+            col("userPassword", true, "userpassword", "password", "passwd"),
+            col("fullName", false, "fullname", "full_name"),
+            col("isManager", false, "ismanager", "manager", "is_manager")),
+        new TableSpec("products", new String[] {"products", "product"}, "productID",
+            col("productID", true, "productid", "id"),
+            col("productName", true, "productname", "name", "title"),
+            col("price", true, "price", "unitprice", "cost"),
+            col("quantity", true, "quantity", "qty", "stock"),
+            col("sellerID", false, "sellerid", "seller")),
+        new TableSpec("orders", new String[] {"orders", "order"}, "orderID",
+            col("orderID", true, "orderid", "id"),
+            col("buyerID", false, "buyerid", "customerid", "userid"),
+            col("totalCost", true, "totalcost", "total", "amount"),
+            col("totalTax", false, "totaltax", "tax"),
+            col("date", false, "date", "orderdate", "created")),
+        new TableSpec("orderLine", new String[] {"orderline", "orderlines", "order_line", "orderitem", "orderitems"}, "orderID",
+            col("orderID", true, "orderid"),
+            col("productID", true, "productid"),
+            col("quantity", true, "quantity", "qty"),
+            col("cost", true, "cost", "price", "amount")),
+    };
+
+    private final String sqlitePath;
+    private final ConnectionPool mysqlPool;
+    private final int workers;
+    private final int batchSize;
+    private final int commitSize;
+
+    private final Path checkpointFile;
+    private final Properties checkpoints = new Properties();
+
+    public ParallelMigrator(String sqlitePath, ConnectionPool mysqlPool, int workers, int batchSize, int commitSize) {
+        this.sqlitePath = sqlitePath;
+        this.mysqlPool = mysqlPool;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.commitSize = commitSize;
+        this.checkpointFile = Paths.get(sqlitePath + ".migration");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java ParallelMigrator <path-to-store.db> [workers] [batchSize] [commitSize]");
+            System.exit(1);
+        }
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int commitSize = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+
+        Class.forName("com.mysql.cj.jdbc.Driver");
+        try (ConnectionPool pool = new ConnectionPool(
+                "jdbc:mysql://localhost:3306/storeapp?rewriteBatchedStatements=true", "root", "1234",
+                0, workers, 60000)) {
+            new ParallelMigrator(args[0], pool, workers, batchSize, commitSize).migrate();
+        }
+    }
+
+    public void migrate() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        loadCheckpoints();
+
+        long started = System.nanoTime();
+        long total = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "migration-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try (Connection sqlite = DriverManager.getConnection("jdbc:sqlite:" + sqlitePath)) {
+            List<String> sourceTables = SQLiteToMySQLMigrator.listTables(sqlite);
+            for (TableSpec spec : TABLES) {
+                String source = spec.findSource(sourceTables);
+                if (source == null) {
+                    if (spec.target.equals("products")) {
+                        throw new SQLException("Could not find a products table in SQLite. Checked tables: " + sourceTables);
+                    }
+                    System.out.println("Migration: no SQLite table for " + spec.target + ", skipped");
+                    continue;
+                }
+                total += migrateTable(sqlite, pool, spec, source);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Migration finished: %d rows in %.1f s (%.0f rows/s)%n", total, seconds, total / Math.max(seconds, 1e-9));
+        // A complete run leaves nothing to resume
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    private long migrateTable(Connection sqlite, ExecutorService pool, TableSpec spec, String source) throws Exception {
+        Map<String, String> columns = spec.resolveColumns(sqlite, source);
+        List<long[]> ranges = ranges(sqlite, spec, source, columns.get(spec.key));
+        System.out.println("Migration: " + source + " -> " + spec.target + " columns=" + columns + " partitions=" + ranges.size());
+
+        AtomicLong copied = new AtomicLong();
+        long started = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            int partition = i;
+            long[] range = ranges.get(i);
+            futures.add(pool.submit(() -> {
+                copyRange(spec, source, columns, partition, range[0], range[1], copied);
+                return null;
+            }));
+        }
+
+        // Report progress while the partitions run
+        for (Future<?> f : futures) {
+            while (true) {
+                try {
+                    f.get(5, TimeUnit.SECONDS);
+                    break;
+                } catch (TimeoutException ex) {
+                    report(spec.target, copied.get(), started);
+                } catch (ExecutionException ex) {
+                    for (Future<?> other : futures) other.cancel(true);
+                    Throwable cause = ex.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+                }
+            }
+        }
+        report(spec.target, copied.get(), started);
+        return copied.get();
+    }
+
+    private void copyRange(TableSpec spec, String source, Map<String, String> columns,
+                           int partition, long low, long high, AtomicLong copied) throws Exception {
+        String progressKey = spec.target + "." + partition;
+        String done = checkpoint(progressKey);
+        if ("done".equals(done)) return;
+        long from = done == null ? low : Long.parseLong(done);
+
+        List<String> targetCols = new ArrayList<>(columns.keySet());
+        StringBuilder select = new StringBuilder("SELECT ");
+        for (int i = 0; i < targetCols.size(); i++) {
+            if (i > 0) select.append(", ");
+            select.append('"').append(columns.get(targetCols.get(i))).append('"');
+        }
+        String keyCol = columns.get(spec.key);
+        select.append(" FROM \"").append(source).append("\" WHERE \"").append(keyCol).append("\" >= ? AND \"")
+              .append(keyCol).append("\" <= ? ORDER BY \"").append(keyCol).append('"');
+
+        int keyIndex = targetCols.indexOf(spec.key);
+        try (Connection sqlite = DriverManager.getConnection("jdbc:sqlite:" + sqlitePath);
+             Connection mysql = mysqlPool.getConnection()) {
+            mysql.setAutoCommit(false);
+            try (Statement s = mysql.createStatement()) {
+                // Parent rows may land in another partition later; constraints are the source database's business
+                s.execute("SET FOREIGN_KEY_CHECKS = 0");
+            }
+            try (PreparedStatement read = sqlite.prepareStatement(select.toString());
+                 PreparedStatement upsert = mysql.prepareStatement(upsertSql(spec.target, targetCols))) {
+                read.setLong(1, from);
+                read.setLong(2, high);
+                try (ResultSet rs = read.executeQuery()) {
+                    int inBatch = 0;
+                    int sinceCommit = 0;
+                    long lastKey = from;
+                    while (rs.next()) {
+                        for (int c = 0; c < targetCols.size(); c++) {
+                            upsert.setObject(c + 1, rs.getObject(c + 1));
+                        }
+                        lastKey = rs.getLong(keyIndex + 1);
+                        upsert.addBatch();
+                        if (++inBatch == batchSize) {
+                            upsert.executeBatch();
+                            inBatch = 0;
+                        }
+                        if (++sinceCommit == commitSize) {
+                            if (inBatch > 0) upsert.executeBatch();
+                            inBatch = 0;
+                            mysql.commit();
+                            copied.addAndGet(sinceCommit);
+                            sinceCommit = 0;
+                            // Resume at this key, not after it: orderLine has several rows per key
+                            saveCheckpoint(progressKey, Long.toString(lastKey));
+                        }
+                    }
+                    if (inBatch > 0) upsert.executeBatch();
+                    mysql.commit();
+                    copied.addAndGet(sinceCommit);
+                    saveCheckpoint(progressKey, "done");
+                }
+            } catch (Exception ex) {
+                try { mysql.rollback(); } catch (SQLException ignore) {}
+                throw ex;
+            } finally {
+                try (Statement s = mysql.createStatement()) {
+                    s.execute("SET FOREIGN_KEY_CHECKS = 1");
+                } catch (SQLException ignore) {}
+            }
+        }
+    }
+
+    // Splits [min(key), max(key)] into equal-width ranges, or reuses the ranges of an interrupted run
+    private List<long[]> ranges(Connection sqlite, TableSpec spec, String source, String keyCol) throws SQLException, IOException {
+        List<long[]> ranges = new ArrayList<>();
+        String saved = checkpoint(spec.target + ".ranges");
+        if (saved != null) {
+            for (String r : saved.split(",")) {
+                if (r.isEmpty()) continue;
+                String[] bounds = r.split(":");
+                ranges.add(new long[] { Long.parseLong(bounds[0]), Long.parseLong(bounds[1]) });
+            }
+            return ranges;
+        }
+
+        long min = 0, max = -1;
+        try (Statement s = sqlite.createStatement();
+             ResultSet rs = s.executeQuery("SELECT MIN(\"" + keyCol + "\"), MAX(\"" + keyCol + "\") FROM \"" + source + "\"")) {
+            if (rs.next() && rs.getObject(1) != null) {
+                min = rs.getLong(1);
+                max = rs.getLong(2);
+            }
+        }
+        if (max >= min) {
+            long width = Math.max(1, (max - min + workers) / workers);
+            for (long lo = min; lo <= max; lo += width) {
+                ranges.add(new long[] { lo, Math.min(max, lo + width - 1) });
+                if (lo + width < lo) break;     // overflow guard
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (long[] r : ranges) sb.append(r[0]).append(':').append(r[1]).append(',');
+        saveCheckpoint(spec.target + ".ranges", sb.toString());
+        return ranges;
+    }
+
+    private static String upsertSql(String table, List<String> cols) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (").append(String.join(", ", cols));
+        sql.append(") VALUES (");
+        for (int i = 0; i < cols.size(); i++) sql.append(i == 0 ? "?" : ", ?");
+        sql.append(") ON DUPLICATE KEY UPDATE ");
+        for (int i = 0; i < cols.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(cols.get(i)).append("=VALUES(").append(cols.get(i)).append(')');
+        }
+        return sql.toString();
+    }
+
+    private static void report(String table, long rows, long startedNanos) {
+        double seconds = (System.nanoTime() - startedNanos) / 1e9;
+        System.out.printf("Migration: %s %d rows, %.0f rows/s%n", table, rows, rows / Math.max(seconds, 1e-9));
+    }
+
+    private synchronized String checkpoint(String key) {
+        return checkpoints.getProperty(key);
+    }
+
+    private void loadCheckpoints() throws IOException {
+        if (!Files.exists(checkpointFile)) return;
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            synchronized (this) {
+                checkpoints.load(in);
+            }
+        }
+        System.out.println("Migration: resuming from checkpoint " + checkpointFile);
+    }
+
+    // Written to a temp file and moved into place, so a crash never leaves a half-written checkpoint
+    private synchronized void saveCheckpoint(String key, String value) throws IOException {
+        checkpoints.setProperty(key, value);
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            checkpoints.store(out, "SQLite -> MySQL migration progress");
+        }
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ColumnSpec col(String target, boolean required, String... candidates) {
+        return new ColumnSpec(target, required, candidates);
+    }
+
+    private static class ColumnSpec {
+        final String target;
+        final boolean required;
+        final String[] candidates;
+
+        ColumnSpec(String target, boolean required, String[] candidates) {
+            this.target = target;
+            this.required = required;
+            this.candidates = candidates;
+        }
+    }
+
+    private static class TableSpec {
+        final String target;
+        final String[] sourceNames;
+        final String key;
+        final ColumnSpec[] columns;
+
+        TableSpec(String target, String[] sourceNames, String key, ColumnSpec... columns) {
+            this.target = target;
+            this.sourceNames = sourceNames;
+            this.key = key;
+            this.columns = columns;
+        }
+
+        String findSource(List<String> tables) {
+            for (String name : sourceNames) {
+                for (String t : tables) {
+                    if (t.equalsIgnoreCase(name)) return t;
+                }
+            }
+            return null;
+        }
+
+        // Target column -> SQLite column, in target order; optional columns missing in SQLite are left out
+        Map<String, String> resolveColumns(Connection sqlite, String source) throws SQLException {
+            Set<String> present = SQLiteToMySQLMigrator.getLowercaseColumns(sqlite, source);
+            Map<String, String> resolved = new LinkedHashMap<>();
+            List<String> missing = new ArrayList<>();
+            for (ColumnSpec c : columns) {
+                String found = null;
+                for (String candidate : c.candidates) {
+                    if (present.contains(candidate)) {
+                        found = SQLiteToMySQLMigrator.getActualColumnName(sqlite, source, candidate);
+                        break;
+                    }
+                }
+                if (found != null) resolved.put(c.target, found);
+                else if (c.required) missing.add(c.target);
+            }
+            if (!missing.isEmpty()) {
+                throw new SQLException("Missing required columns in SQLite " + source + " table: " + missing + " (found map=" + resolved + ")");
+            }
+            return resolved;
+        }
+    }
+}
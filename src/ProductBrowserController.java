@@ -0,0 +1,66 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+public class ProductBrowserController implements ActionListener {
+    private ProductBrowserView browserView;
+
+    public ProductBrowserController(ProductBrowserView browserView) {
+        this.browserView = browserView;
+
+        browserView.getBtnRefresh().addActionListener(this);
+        // Every scroll or resize tells the model which rows it has to have
+        browserView.getScrollProducts().getViewport().addChangeListener(e -> updateVisibleRows());
+        browserView.getTblProducts().addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) openSelectedProduct();
+            }
+        });
+    }
+
+    public void actionPerformed(ActionEvent e) {
+        if (e.getSource() == browserView.getBtnRefresh())
+            refresh();
+    }
+
+    public void refresh() {
+        browserView.getBtnRefresh().setEnabled(false);
+        browserView.getLabStatus().setText("Loading...");
+        browserView.getProducts().refresh(ok -> {
+            browserView.getBtnRefresh().setEnabled(true);
+            if (!ok) {
+                browserView.getLabStatus().setText(" ");
+                JOptionPane.showMessageDialog(null, "Failed to load the product catalog. See logs for details.");
+                return;
+            }
+            browserView.getLabStatus().setText(browserView.getProducts().getRowCount() + " products");
+            updateVisibleRows();
+        });
+    }
+
+    private void updateVisibleRows() {
+        JTable table = browserView.getTblProducts();
+        Rectangle visible = browserView.getScrollProducts().getViewport().getViewRect();
+        int first = table.rowAtPoint(new Point(0, visible.y));
+        int last = table.rowAtPoint(new Point(0, visible.y + visible.height - 1));
+        if (first < 0) first = 0;
+        if (last < 0) last = table.getRowCount() - 1;
+        browserView.getProducts().setVisibleRows(first, last);
+    }
+
+    // Opens the product in the product view so it can be edited
+    private void openSelectedProduct() {
+        int row = browserView.getTblProducts().getSelectedRow();
+        if (row < 0) return;
+        Product product = browserView.getProducts().getProductAt(row);
+        if (product == null) return;
+
+        ProductView productView = Application.getInstance().getProductView();
+        productView.getTxtProductID().setText(String.valueOf(product.getProductID()));
+        productView.setVisible(true);
+        productView.getBtnLoad().doClick();
+    }
+}
@@ -0,0 +1,48 @@
+import javax.swing.*;
+import java.awt.*;
+
+public class ProductBrowserView extends JFrame {
+
+    // 200 rows a page, with two pages kept on either side of what is visible
+    private ProductTableModel products = new ProductTableModel(200, 2);
+
+    private JTable tblProducts = new JTable(products);
+    private JScrollPane scrollProducts = new JScrollPane(tblProducts);
+    private JButton btnRefresh = new JButton("Refresh");
+    private JLabel labStatus = new JLabel(" ");
+
+    public ProductBrowserView() {
+        this.setTitle("Browse Products");
+        this.setLayout(new BorderLayout());
+        this.setSize(700, 600);
+
+        tblProducts.setFillsViewportHeight(true);
+        tblProducts.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        this.getContentPane().add(scrollProducts, BorderLayout.CENTER);
+
+        JPanel panelButton = new JPanel();
+        panelButton.add(btnRefresh);
+        panelButton.add(labStatus);
+        this.getContentPane().add(panelButton, BorderLayout.SOUTH);
+    }
+
+    public ProductTableModel getProducts() {
+        return products;
+    }
+
+    public JTable getTblProducts() {
+        return tblProducts;
+    }
+
+    public JScrollPane getScrollProducts() {
+        return scrollProducts;
+    }
+
+    public JButton getBtnRefresh() {
+        return btnRefresh;
+    }
+
+    public JLabel getLabStatus() {
+        return labStatus;
+    }
+}
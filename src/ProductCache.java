@@ -0,0 +1,178 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process cache in front of DataAdapter.loadProduct.
+ * Entries are evicted least-recently-used first and expire after a TTL. Missing product IDs are cached too,
+ * with their own (usually shorter) TTL, so repeated lookups of a bad ID don't reach the database.
+ * Expired and invalidated products are kept (within the size bound) as stale copies, which loaders may fall back to
+ * when the database cannot be reached.
+ */
+public class ProductCache {
+
+    // Marks a product ID that is known not to exist
+    private static final Product MISSING = new Product();
+
+    // expiresAt of an entry that is only kept as a stale copy
+    private static final long STALE = Long.MIN_VALUE;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    private final LinkedHashMap<Integer, Entry> entries;
+
+    // Bumped on every invalidation; a load that raced with an invalidation does not get cached
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public ProductCache(int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > ProductCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Result of a lookup: hit tells whether the cache knew the answer, product is a private copy or null
+     * when the ID is known to be missing. On a miss, stale is a copy of the last product the cache held for the ID
+     * (possibly out of date), or null.
+     */
+    public static class Lookup {
+        public final boolean hit;
+        public final Product product;
+        public final Product stale;
+        final long stamp;
+
+        Lookup(boolean hit, Product product, Product stale, long stamp) {
+            this.hit = hit;
+            this.product = product;
+            this.stale = stale;
+            this.stamp = stamp;
+        }
+    }
+
+    public Lookup get(int productID) {
+        long stamp = invalidationCount.get();
+        Entry entry;
+        Product stale = null;
+        synchronized (this) {
+            entry = entries.get(productID);
+            if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+                if (entry.product == MISSING) {
+                    entries.remove(productID);
+                } else {
+                    stale = entry.product;
+                    if (entry.expiresAt != STALE) entries.put(productID, new Entry(stale, STALE));
+                }
+                if (entry.expiresAt != STALE) expirations.incrementAndGet();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return new Lookup(false, null, stale == null ? null : copy(stale), stamp);
+        }
+        hits.incrementAndGet();
+        return new Lookup(true, entry.product == MISSING ? null : copy(entry.product), null, stamp);
+    }
+
+    /**
+     * Stores what the database returned for a lookup that missed. A null product is cached as missing.
+     * Nothing is stored if any invalidation happened after the lookup, since the loaded row may be stale.
+     */
+    public void put(int productID, Product product, Lookup miss) {
+        long now = System.currentTimeMillis();
+        Entry entry = product == null
+                ? new Entry(MISSING, now + negativeTtlMillis)
+                : new Entry(copy(product), now + ttlMillis);
+        synchronized (this) {
+            if (invalidationCount.get() != miss.stamp) return;
+            entries.put(productID, entry);
+        }
+    }
+
+    public void invalidate(int productID) {
+        synchronized (this) {
+            invalidationCount.incrementAndGet();
+            Entry entry = entries.get(productID);
+            if (entry == null) return;
+            if (entry.product == MISSING) entries.remove(productID);
+            else entries.put(productID, new Entry(entry.product, STALE));
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (this) {
+            invalidationCount.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProductCache[size=%d, hitRatio=%.3f, hits=%d, misses=%d, evictions=%d, expirations=%d]",
+                size(), getHitRatio(), getHits(), getMisses(), getEvictions(), getExpirations());
+    }
+
+    // Callers may modify the Product they get back, so the cache never shares its own instance
+    private static Product copy(Product p) {
+        Product c = new Product();
+        c.setProductID(p.getProductID());
+        c.setName(p.getName());
+        c.setPrice(p.getPrice());
+        c.setQuantity(p.getQuantity());
+        c.setSellerID(p.getSellerID());
+        return c;
+    }
+
+    private static class Entry {
+        final Product product;
+        final long expiresAt;
+
+        Entry(Product product, long expiresAt) {
+            this.product = product;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+import java.sql.*;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory copy of the products table for price lookup and scanning terminals.
+ * productID is mapped to a slot with an int-keyed open-addressing table (linear probing), and the row values
+ * live in parallel primitive arrays, so a lookup neither boxes nor allocates.
+ * Readers use optimistic StampedLock reads; writers (refresh, put, adjustQuantity) take the write lock.
+ * An optimistic reader may see arrays that a writer is replacing, so it copies each array reference to a local and
+ * bounds-checks the row before indexing; validate() then throws away whatever it read.
+ */
+public class ProductCatalogSnapshot {
+
+    private static final int EMPTY = -1;                 // free slot in the index
+    private static final float MAX_LOAD = 0.6f;
+
+    private final StampedLock lock = new StampedLock();
+
+    // Open-addressing index: keys[i] is a productID, slots[i] the row it points to (EMPTY when free)
+    private int[] keys;
+    private int[] slots;
+    private int mask;
+
+    // Row storage, one entry per product in load order
+    private int[] productIDs;
+    private double[] prices;
+    private double[] quantities;
+    private int[] sellerIDs;
+    private String[] names;
+    private int size;
+
+    private int maxProductID = Integer.MIN_VALUE;
+
+    public ProductCatalogSnapshot(int expectedProducts) {
+        int capacity = Math.max(16, expectedProducts);
+        allocateRows(capacity);
+        allocateIndex(tableSizeFor(capacity));
+    }
+
+    /**
+     * Builds a snapshot from one streaming scan of the products table.
+     */
+    public static ProductCatalogSnapshot load(ConnectionPool pool) throws SQLException {
+        ProductCatalogSnapshot snapshot;
+        try (Connection connection = pool.getConnection()) {
+            int count = 1024;
+            try (Statement s = connection.createStatement();
+                 ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM products")) {
+                if (rs.next()) count = Math.max(count, rs.getInt(1));
+            }
+            snapshot = new ProductCatalogSnapshot(count);
+            snapshot.scan(connection, "SELECT productID, productName, price, quantity, sellerID FROM products", null);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Re-reads every row in one streaming scan, updating products in place and adding new ones. Readers keep being
+     * served from the current contents meanwhile, so this also works to fill an empty snapshot that is already in use.
+     */
+    public void reload(ConnectionPool pool) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            scan(connection, "SELECT productID, productName, price, quantity, sellerID FROM products", null);
+        }
+    }
+
+    /**
+     * Incremental refresh: picks up products added since the last load/refresh (productID above the highest seen)
+     * and re-reads the given IDs, e.g. the ones touched by other terminals.
+     */
+    public void refresh(ConnectionPool pool, Collection<Integer> changedIDs) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            int since;
+            long stamp = lock.readLock();
+            try {
+                since = maxProductID;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            scan(connection, "SELECT productID, productName, price, quantity, sellerID FROM products WHERE productID > ? ORDER BY productID", since);
+
+            if (changedIDs != null) {
+                String sql = "SELECT productID, productName, price, quantity, sellerID FROM products WHERE productID = ?";
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (int id : changedIDs) {
+                        ps.setInt(1, id);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            if (rs.next()) {
+                                put(rs.getInt(1), rs.getString(2), rs.getDouble(3), rs.getDouble(4), rs.getInt(5));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void scan(Connection connection, String sql, Integer sinceID) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // MySQL streams rows one at a time only with this fetch size; otherwise the whole table is buffered
+            ps.setFetchSize(Integer.MIN_VALUE);
+            if (sinceID != null) ps.setInt(1, sinceID);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    put(rs.getInt(1), rs.getString(2), rs.getDouble(3), rs.getDouble(4), rs.getInt(5));
+                }
+            }
+        }
+    }
+
+    public void put(Product product) {
+        put(product.getProductID(), product.getName(), product.getPrice(), product.getQuantity(), product.getSellerID());
+    }
+
+    public void put(int productID, String name, double price, double quantity, int sellerID) {
+        long stamp = lock.writeLock();
+        try {
+            int row = findRow(productID);
+            if (row == EMPTY) {
+                if (size == productIDs.length) growRows();
+                if ((size + 1) > keys.length * MAX_LOAD) rehash(keys.length << 1);
+                row = size++;
+                insertIndex(productID, row);
+                productIDs[row] = productID;
+                if (productID > maxProductID) maxProductID = productID;
+            }
+            names[row] = name;
+            prices[row] = price;
+            quantities[row] = quantity;
+            sellerIDs[row] = sellerID;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Applies a stock change made by this process (e.g. a committed order) without re-reading the row
+    public void adjustQuantity(int productID, double delta) {
+        long stamp = lock.writeLock();
+        try {
+            int row = findRow(productID);
+            if (row != EMPTY) quantities[row] += delta;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean contains(int productID) {
+        return readRow(productID) != EMPTY;
+    }
+
+    // Returns NaN when the product is not in the snapshot
+    public double getPrice(int productID) {
+        long stamp = lock.tryOptimisticRead();
+        int row = findRow(productID);
+        double[] p = prices;
+        double value = row == EMPTY || row >= p.length ? Double.NaN : p[row];
+        if (lock.validate(stamp)) return value;
+
+        stamp = lock.readLock();
+        try {
+            row = findRow(productID);
+            return row == EMPTY ? Double.NaN : prices[row];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Returns NaN when the product is not in the snapshot
+    public double getQuantity(int productID) {
+        long stamp = lock.tryOptimisticRead();
+        int row = findRow(productID);
+        double[] q = quantities;
+        double value = row == EMPTY || row >= q.length ? Double.NaN : q[row];
+        if (lock.validate(stamp)) return value;
+
+        stamp = lock.readLock();
+        try {
+            row = findRow(productID);
+            return row == EMPTY ? Double.NaN : quantities[row];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Returns -1 when the product is not in the snapshot
+    public int getSellerID(int productID) {
+        long stamp = lock.readLock();
+        try {
+            int row = findRow(productID);
+            return row == EMPTY ? -1 : sellerIDs[row];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Materializes a Product for code that needs the object form, or null if the ID is unknown.
+     */
+    public Product getProduct(int productID) {
+        long stamp = lock.readLock();
+        try {
+            int row = findRow(productID);
+            if (row == EMPTY) return null;
+            Product product = new Product();
+            product.setProductID(productID);
+            product.setName(names[row]);
+            product.setPrice(prices[row]);
+            product.setQuantity(quantities[row]);
+            product.setSellerID(sellerIDs[row]);
+            return product;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int readRow(int productID) {
+        long stamp = lock.tryOptimisticRead();
+        int row = findRow(productID);
+        // Only the found/not-found answer is used, so no row array is touched here
+        if (lock.validate(stamp)) return row;
+        stamp = lock.readLock();
+        try {
+            return findRow(productID);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // May run without a lock under an optimistic read, so it must tolerate arrays being swapped underneath it
+    private int findRow(int productID) {
+        int[] k = keys;
+        int[] s = slots;
+        int m = k.length - 1;
+        if (s.length != k.length) return EMPTY;      // torn read during rehash; caller re-validates
+        int i = mix(productID) & m;
+        for (int probes = 0; probes <= m; probes++) {
+            int row = s[i];
+            if (row == EMPTY) return EMPTY;
+            if (k[i] == productID) return row;
+            i = (i + 1) & m;
+        }
+        return EMPTY;
+    }
+
+    private void insertIndex(int productID, int row) {
+        int i = mix(productID) & mask;
+        while (slots[i] != EMPTY) i = (i + 1) & mask;
+        keys[i] = productID;
+        slots[i] = row;
+    }
+
+    private void rehash(int newTableSize) {
+        allocateIndex(newTableSize);
+        for (int row = 0; row < size; row++) insertIndex(productIDs[row], row);
+    }
+
+    private void allocateIndex(int tableSize) {
+        int[] newKeys = new int[tableSize];
+        int[] newSlots = new int[tableSize];
+        java.util.Arrays.fill(newSlots, EMPTY);
+        keys = newKeys;
+        slots = newSlots;
+        mask = tableSize - 1;
+    }
+
+    private void allocateRows(int capacity) {
+        productIDs = new int[capacity];
+        prices = new double[capacity];
+        quantities = new double[capacity];
+        sellerIDs = new int[capacity];
+        names = new String[capacity];
+    }
+
+    private void growRows() {
+        int capacity = productIDs.length << 1;
+        productIDs = java.util.Arrays.copyOf(productIDs, capacity);
+        prices = java.util.Arrays.copyOf(prices, capacity);
+        quantities = java.util.Arrays.copyOf(quantities, capacity);
+        sellerIDs = java.util.Arrays.copyOf(sellerIDs, capacity);
+        names = java.util.Arrays.copyOf(names, capacity);
+    }
+
+    private static int tableSizeFor(int entries) {
+        int needed = (int) Math.ceil(entries / MAX_LOAD);
+        int size = Integer.highestOneBit(Math.max(needed, 16));
+        return size < needed ? size << 1 : size;
+    }
+
+    // Sequential IDs would cluster under linear probing without spreading the bits first
+    private static int mix(int x) {
+        x *= 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+}
@@ -1,6 +1,7 @@
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.CompletionException;
 
 public class ProductController implements ActionListener {
     private ProductView productView;
@@ -58,34 +59,34 @@ public class ProductController implements ActionListener {
             return;
         }
 
-        String productName = productView.getTxtProductName().getText().trim();
-
-        if (productName.length() == 0) {
-            JOptionPane.showMessageDialog(null, "Invalid product name! Please provide a non-empty product name!");
-            return;
-        }
-        if (productName.length() > 255) {
-            JOptionPane.showMessageDialog(null, "Invalid product name! Please provide a product name less than 255 characters!");
-            return;
-        }
-        //check that product name cannot be a string of all spaces
-        if (productName.replaceAll(" ", "").length() == 0) {
-            JOptionPane.showMessageDialog(null, "Invalid product name! Please provide a non-empty product name!");
-            return;
-        }
-
-        // Done all validations! Make an object for this product!
-
         Product product = new Product();
         product.setProductID(productID);
-        product.setSellerID(Application.getInstance().getCurrentUser().getUserID());
-        product.setName(productName);
+        product.setName(productView.getTxtProductName().getText().trim());
         product.setPrice(productPrice);
         product.setQuantity(productQuantity);
 
-        // Store the product to the database
+        // The name rules are the same for every client, so they live in the service
+        String problem = StoreService.validateProduct(product);
+        if (problem != null) {
+            JOptionPane.showMessageDialog(null, problem);
+            return;
+        }
 
-        Application.getInstance().getDataAdapter().saveProduct(product);
+        // Store the product to the database in the background, with the logged-in user as its seller
+
+        User seller = Application.getInstance().getCurrentUser();
+        productView.getBtnSave().setEnabled(false);
+        Application.getInstance().getAsyncDataService()
+                .submit(() -> Application.getInstance().getStoreService().saveProduct(product, seller))
+                .whenCompleteAsync((saved, ex) -> {
+                    productView.getBtnSave().setEnabled(true);
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    if (cause instanceof StoreService.RejectedException) {
+                        JOptionPane.showMessageDialog(null, cause.getMessage());
+                    } else if (ex != null || !saved) {
+                        JOptionPane.showMessageDialog(null, "Failed to save product. See logs for details.");
+                    }
+                }, AsyncDataService.edt());
     }
 
     private void loadProduct() {
@@ -98,16 +99,19 @@ public class ProductController implements ActionListener {
             return;
         }
 
-        Product product = Application.getInstance().getDataAdapter().loadProduct(productID);
-
-        if (product == null) {
-            JOptionPane.showMessageDialog(null, "This product ID does not exist in the database!");
-            return;
-        }
-
-        productView.getTxtProductName().setText(product.getName());
-        productView.getTxtProductPrice().setText(String.valueOf(product.getPrice()));
-        productView.getTxtProductQuantity().setText(String.valueOf(product.getQuantity()));
+        productView.getBtnLoad().setEnabled(false);
+        Application.getInstance().getAsyncDataService().loadProduct(productID)
+                .whenCompleteAsync((product, ex) -> {
+                    productView.getBtnLoad().setEnabled(true);
+                    if (product == null) {
+                        JOptionPane.showMessageDialog(null, "This product ID does not exist in the database!");
+                        return;
+                    }
+
+                    productView.getTxtProductName().setText(product.getName());
+                    productView.getTxtProductPrice().setText(String.valueOf(product.getPrice()));
+                    productView.getTxtProductQuantity().setText(String.valueOf(product.getQuantity()));
+                }, AsyncDataService.edt());
     }
 
 
@@ -0,0 +1,117 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+/**
+ * Lets a cashier pick a product by typing its ID or part of its name. Matches are refreshed on every keystroke
+ * from the in-memory ProductSearchIndex, so no query reaches the database while typing.
+ */
+public class ProductSearchDialog extends JDialog {
+
+    private static final int MAX_RESULTS = 20;
+
+    private JTextField txtQuery = new JTextField(30);
+    private DefaultListModel<ProductSearchIndex.Result> results = new DefaultListModel<>();
+    private JList<ProductSearchIndex.Result> lstResults = new JList<>(results);
+    private JLabel labStatus = new JLabel(" ");
+
+    private Integer selectedProductID = null;
+
+    // Shows the dialog and returns the chosen product ID, or null if it was cancelled
+    public static Integer pickProduct(Component parent) {
+        ProductSearchDialog dialog = new ProductSearchDialog(SwingUtilities.getWindowAncestor(parent));
+        dialog.setLocationRelativeTo(parent);
+        dialog.setVisible(true);
+        return dialog.selectedProductID;
+    }
+
+    private ProductSearchDialog(Window owner) {
+        super(owner, "Find Product", ModalityType.APPLICATION_MODAL);
+        this.setLayout(new BorderLayout());
+        this.setSize(450, 400);
+
+        JPanel panelQuery = new JPanel();
+        panelQuery.add(new JLabel("Product ID or name: "));
+        panelQuery.add(txtQuery);
+        this.getContentPane().add(panelQuery, BorderLayout.NORTH);
+
+        lstResults.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        this.getContentPane().add(new JScrollPane(lstResults), BorderLayout.CENTER);
+        this.getContentPane().add(labStatus, BorderLayout.SOUTH);
+
+        if (Application.getInstance().getProductSearchIndex() == null) {
+            labStatus.setText("Name search is still loading; enter a product ID.");
+        }
+
+        txtQuery.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { search(); }
+            public void removeUpdate(DocumentEvent e) { search(); }
+            public void changedUpdate(DocumentEvent e) { search(); }
+        });
+        txtQuery.addActionListener(e -> choose(false));
+        // Down arrow moves from the query into the results
+        txtQuery.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, 0), "toResults");
+        txtQuery.getActionMap().put("toResults", new AbstractAction() {
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                if (!results.isEmpty()) {
+                    lstResults.setSelectedIndex(0);
+                    lstResults.requestFocusInWindow();
+                }
+            }
+        });
+        lstResults.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "choose");
+        lstResults.getActionMap().put("choose", new AbstractAction() {
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                choose(true);
+            }
+        });
+        lstResults.addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) choose(true);
+            }
+        });
+    }
+
+    private void search() {
+        results.clear();
+        ProductSearchIndex index = Application.getInstance().getProductSearchIndex();
+        if (index == null) return;
+
+        long start = System.nanoTime();
+        List<ProductSearchIndex.Result> found = index.search(txtQuery.getText(), MAX_RESULTS);
+        long micros = (System.nanoTime() - start) / 1000;
+        for (ProductSearchIndex.Result r : found) {
+            results.addElement(r);
+        }
+        labStatus.setText(found.size() + " matches (" + micros + " us)");
+    }
+
+    // Picking from the list takes the selected match. Enter in the query takes a numeric query as a product ID
+    // first (a name that happens to contain the digits must not win), then a lone match.
+    private void choose(boolean fromList) {
+        ProductSearchIndex.Result selected = fromList ? lstResults.getSelectedValue() : null;
+        if (selected == null && !fromList) {
+            try {
+                selectedProductID = Integer.parseInt(txtQuery.getText().trim());
+                dispose();
+                return;
+            } catch (NumberFormatException e) {
+                if (results.size() == 1) selected = results.get(0);
+            }
+        }
+        if (selected != null) {
+            selectedProductID = selected.getProductID();
+            dispose();
+        } else if (!results.isEmpty()) {
+            lstResults.setSelectedIndex(0);
+            lstResults.requestFocusInWindow();
+        } else {
+            JOptionPane.showMessageDialog(this, "No product matches \"" + txtQuery.getText().trim() + "\".");
+        }
+    }
+}
@@ -0,0 +1,321 @@
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory product-name search for typeahead.
+ * Names are split into lowercase words; every word is a path in a prefix trie whose end node holds the sorted
+ * IDs of the products containing it (the inverted index), and every node counts the postings below it.
+ * A query matches products that have, for each query word, some word starting with it. Candidates come from the
+ * most selective query word's subtree and are checked against the rest, then ranked: whole-word matches beat
+ * prefix matches, rare words count more than common ones, and a match on the first word of the name and shorter
+ * names win ties.
+ */
+public class ProductSearchIndex {
+
+    public static class Result {
+        private final int productID;
+        private final String name;
+        private final double score;
+
+        Result(int productID, String name, double score) {
+            this.productID = productID;
+            this.name = name;
+            this.score = score;
+        }
+
+        public int getProductID() {
+            return productID;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return productID + " - " + name;
+        }
+    }
+
+    // Upper bound on products examined per query, so a one-letter prefix stays as fast as a full word
+    private static final int MAX_CANDIDATES = 500;
+
+    private static class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        int[] postings;             // product IDs containing the word ending here, sorted; null if none ever did
+        int postingCount;
+        int subtreeCount;           // postings in this node and everything below it
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) return children[i];
+            i = -i - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(labels, i, newLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            newLabels[i] = c;
+            Node node = new Node();
+            newChildren[i] = node;
+            labels = newLabels;
+            children = newChildren;
+            return node;
+        }
+    }
+
+    private static class Doc {
+        final String name;
+        final String[] words;
+        final Node[] nodes;         // trie node where each word ends, for its document frequency
+
+        Doc(String name, String[] words) {
+            this.name = name;
+            this.words = words;
+            this.nodes = new Node[words.length];
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final HashMap<Integer, Doc> docs = new HashMap<>();
+
+    /**
+     * Builds an index from one streaming scan of the products table.
+     */
+    public static ProductSearchIndex load(ConnectionPool pool) throws SQLException {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.scan(pool);
+        return index;
+    }
+
+    /**
+     * Indexes every product from the database. Products already put by a save made while the scan was running are
+     * left alone, since that save is at least as new as the row the scan read.
+     */
+    public void scan(ConnectionPool pool) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement ps = connection.prepareStatement("SELECT productID, productName FROM products",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    String name = rs.getString(2);
+                    lock.writeLock().lock();
+                    try {
+                        if (!docs.containsKey(id)) add(id, name);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            }
+        }
+        System.out.printf("Product search index: %d products in %.1f ms%n", size(), (System.nanoTime() - start) / 1e6);
+    }
+
+    public void put(Product product) {
+        put(product.getProductID(), product.getName());
+    }
+
+    // Adds the product or re-indexes it under its new name
+    public void put(int productID, String name) {
+        lock.writeLock().lock();
+        try {
+            Doc old = docs.get(productID);
+            if (old != null) {
+                if (old.name.equals(name)) return;
+                removeDoc(productID, old);
+            }
+            add(productID, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int productID) {
+        lock.writeLock().lock();
+        try {
+            Doc old = docs.get(productID);
+            if (old != null) removeDoc(productID, old);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit products matching the query, best first. Every query word is treated as a prefix,
+     * so it can be called on each keystroke.
+     */
+    public List<Result> search(String query, int limit) {
+        String[] terms = words(query);
+        if (terms.length == 0 || limit <= 0) return Collections.emptyList();
+
+        lock.readLock().lock();
+        try {
+            // Start from the query word with the fewest postings under its prefix
+            Node[] prefixNodes = new Node[terms.length];
+            int driver = 0;
+            for (int i = 0; i < terms.length; i++) {
+                prefixNodes[i] = find(terms[i]);
+                if (prefixNodes[i] == null || prefixNodes[i].subtreeCount == 0) return Collections.emptyList();
+                if (prefixNodes[i].subtreeCount < prefixNodes[driver].subtreeCount) driver = i;
+            }
+
+            PriorityQueue<Result> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+            HashSet<Integer> seen = new HashSet<>();
+            int examined = 0;
+
+            // Breadth-first so short completions of the prefix are examined before long ones
+            ArrayDeque<Node> queue = new ArrayDeque<>();
+            queue.add(prefixNodes[driver]);
+            while (!queue.isEmpty() && examined < MAX_CANDIDATES) {
+                Node node = queue.poll();
+                for (int i = 0; i < node.postingCount && examined < MAX_CANDIDATES; i++) {
+                    int id = node.postings[i];
+                    if (!seen.add(id)) continue;
+                    examined++;
+                    Doc doc = docs.get(id);
+                    double score = score(terms, doc);
+                    if (score < 0) continue;
+                    best.add(new Result(id, doc.name, score));
+                    if (best.size() > limit) best.poll();
+                }
+                for (Node child : node.children) {
+                    if (child.subtreeCount > 0) queue.add(child);
+                }
+            }
+
+            List<Result> results = new ArrayList<>(best);
+            results.sort(RANKING);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final Comparator<Result> RANKING = Comparator.comparingDouble((Result r) -> -r.score)
+            .thenComparingInt(r -> r.name.length())
+            .thenComparingInt(r -> r.productID);
+
+    // Returns -1 if some query word is not a prefix of any word in the name
+    private double score(String[] terms, Doc doc) {
+        double total = docs.size() + 1;
+        double score = 0;
+        for (int t = 0; t < terms.length; t++) {
+            double termScore = -1;
+            for (int w = 0; w < doc.words.length; w++) {
+                String word = doc.words[w];
+                if (!word.startsWith(terms[t])) continue;
+                Node node = doc.nodes[w];
+                double idf = 1 + Math.log(total / Math.max(1, node.postingCount));
+                double s = (word.length() == terms[t].length() ? 2 : 1) * idf;
+                if (w == 0 && t == 0) s += 1;
+                termScore = Math.max(termScore, s);
+            }
+            if (termScore < 0) return -1;
+            score += termScore;
+        }
+        return score;
+    }
+
+    private Node find(String word) {
+        Node node = root;
+        for (int i = 0; i < word.length() && node != null; i++) {
+            node = node.child(word.charAt(i));
+        }
+        return node;
+    }
+
+    private void add(int productID, String name) {
+        String[] words = distinct(words(name));
+        Doc doc = new Doc(name, words);
+        docs.put(productID, doc);
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            Node node = root;
+            node.subtreeCount++;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.childOrCreate(word.charAt(i));
+                node.subtreeCount++;
+            }
+            insertPosting(node, productID);
+            doc.nodes[w] = node;
+        }
+    }
+
+    private void removeDoc(int productID, Doc doc) {
+        docs.remove(productID);
+        for (String word : doc.words) {
+            Node node = root;
+            node.subtreeCount--;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.child(word.charAt(i));
+                node.subtreeCount--;
+            }
+            removePosting(node, productID);
+        }
+    }
+
+    private static void insertPosting(Node node, int productID) {
+        if (node.postings == null) node.postings = new int[2];
+        int i = Arrays.binarySearch(node.postings, 0, node.postingCount, productID);
+        if (i >= 0) return;
+        i = -i - 1;
+        if (node.postingCount == node.postings.length) node.postings = Arrays.copyOf(node.postings, node.postingCount * 2);
+        System.arraycopy(node.postings, i, node.postings, i + 1, node.postingCount - i);
+        node.postings[i] = productID;
+        node.postingCount++;
+    }
+
+    private static void removePosting(Node node, int productID) {
+        int i = Arrays.binarySearch(node.postings, 0, node.postingCount, productID);
+        if (i < 0) return;
+        System.arraycopy(node.postings, i + 1, node.postings, i, node.postingCount - i - 1);
+        node.postingCount--;
+    }
+
+    // Lowercase runs of letters and digits, in order
+    static String[] words(String text) {
+        if (text == null) return new String[0];
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) words.add(word.toString());
+        return words.toArray(new String[0]);
+    }
+
+    private static String[] distinct(String[] words) {
+        return new LinkedHashSet<>(Arrays.asList(words)).toArray(new String[0]);
+    }
+}
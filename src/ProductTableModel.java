@@ -0,0 +1,142 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Table model over the whole products table that only holds the pages around what the table is showing.
+ * Rows are fetched a page at a time with keyset queries in the background; a row that is not loaded yet
+ * shows as blank until its page arrives. Must only be used from the event dispatch thread.
+ */
+public class ProductTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = { "Product ID", "Name", "Price", "Quantity", "Seller ID" };
+
+    private final int pageSize;
+    private final int prefetchPages;
+
+    private DataAdapter.ProductPages pages;
+    private final Map<Integer, List<Product>> loaded = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private int firstVisibleRow = 0;
+    private int lastVisibleRow = 0;
+    private int generation = 0;     // bumped by refresh so pages from an older index are dropped
+
+    public ProductTableModel(int pageSize, int prefetchPages) {
+        this.pageSize = pageSize;
+        this.prefetchPages = prefetchPages;
+    }
+
+    /**
+     * Rebuilds the page index and forgets every loaded row. Calls done (on the EDT) with false on failure.
+     */
+    public void refresh(Consumer<Boolean> done) {
+        int gen = ++generation;
+        Application.getInstance().getAsyncDataService()
+                .submit(() -> Application.getInstance().getDataAdapter().loadProductPages(pageSize))
+                .whenCompleteAsync((index, ex) -> {
+                    if (gen != generation) return;
+                    if (ex == null && index != null) {
+                        pages = index;
+                        loaded.clear();
+                        loading.clear();
+                        fireTableDataChanged();
+                        setVisibleRows(firstVisibleRow, lastVisibleRow);
+                    }
+                    if (done != null) done.accept(ex == null && index != null);
+                }, AsyncDataService.edt());
+    }
+
+    /**
+     * Tells the model which rows are on screen: pages outside the window plus the prefetch margin are dropped
+     * and missing pages inside it are requested.
+     */
+    public void setVisibleRows(int first, int last) {
+        firstVisibleRow = Math.max(0, first);
+        lastVisibleRow = Math.max(firstVisibleRow, last);
+        if (pages == null) return;
+
+        int from = Math.max(0, firstVisibleRow / pageSize - prefetchPages);
+        int to = Math.min(pages.getPageCount() - 1, lastVisibleRow / pageSize + prefetchPages);
+        loaded.keySet().removeIf(page -> page < from || page > to);
+        for (int page = from; page <= to; page++) {
+            requestPage(page);
+        }
+    }
+
+    public int getLoadedPageCount() {
+        return loaded.size();
+    }
+
+    public Product getProductAt(int row) {
+        List<Product> page = loaded.get(row / pageSize);
+        if (page == null) {
+            requestPage(row / pageSize);
+            return null;
+        }
+        int offset = row % pageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    private void requestPage(int page) {
+        if (pages == null || page >= pages.getPageCount() || loaded.containsKey(page) || !loading.add(page)) return;
+
+        int gen = generation;
+        int afterID = pages.getAfterID(page);
+        Application.getInstance().getAsyncDataService()
+                .submit(() -> page == 0
+                        ? Application.getInstance().getDataAdapter().loadProductPage(pageSize)
+                        : Application.getInstance().getDataAdapter().loadProductPage(afterID, pageSize))
+                .whenCompleteAsync((rows, ex) -> {
+                    if (gen != generation) return;
+                    loading.remove(page);
+                    if (ex != null || rows == null) return;
+
+                    // Keep it only if the table has not scrolled away while it was loading
+                    int from = firstVisibleRow / pageSize - prefetchPages;
+                    int to = lastVisibleRow / pageSize + prefetchPages;
+                    if (page < from || page > to) return;
+
+                    loaded.put(page, rows);
+                    int firstRow = page * pageSize;
+                    int lastRow = Math.min(getRowCount(), firstRow + pageSize) - 1;
+                    if (lastRow >= firstRow) fireTableRowsUpdated(firstRow, lastRow);
+                }, AsyncDataService.edt());
+    }
+
+    @Override
+    public int getRowCount() {
+        return pages == null ? 0 : pages.getRowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 1 ? String.class : Number.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Product product = getProductAt(row);
+        if (product == null) return null;
+        switch (column) {
+            case 0: return product.getProductID();
+            case 1: return product.getName();
+            case 2: return product.getPrice();
+            case 3: return product.getQuantity();
+            default: return product.getSellerID();
+        }
+    }
+}
@@ -135,7 +135,7 @@ public class SQLiteToMySQLMigrator {
         }
     }
 
-    private static List<String> listTables(Connection sqlite) throws SQLException {
+    static List<String> listTables(Connection sqlite) throws SQLException {
         List<String> tables = new ArrayList<>();
         try (PreparedStatement ps = sqlite.prepareStatement(
                 "SELECT name FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%' ORDER BY name")) {
@@ -146,7 +146,7 @@ public class SQLiteToMySQLMigrator {
         return tables;
     }
 
-    private static Set<String> getLowercaseColumns(Connection sqlite, String table) throws SQLException {
+    static Set<String> getLowercaseColumns(Connection sqlite, String table) throws SQLException {
         Set<String> cols = new HashSet<>();
         try (PreparedStatement ps = sqlite.prepareStatement("PRAGMA table_info(\"" + table + "\")")) {
             try (ResultSet rs = ps.executeQuery()) {
@@ -159,7 +159,7 @@ public class SQLiteToMySQLMigrator {
         return cols;
     }
 
-    private static String getActualColumnName(Connection sqlite, String table, String lowerName) throws SQLException {
+    static String getActualColumnName(Connection sqlite, String table, String lowerName) throws SQLException {
         try (PreparedStatement ps = sqlite.prepareStatement("PRAGMA table_info(\"" + table + "\")")) {
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -0,0 +1,95 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+public class SalesReportController implements ActionListener {
+    private SalesReportView reportView;
+
+    // Rows per top-N list
+    private static final int TOP = 50;
+
+    public SalesReportController(SalesReportView reportView) {
+        this.reportView = reportView;
+        reportView.getBtnRefresh().addActionListener(this);
+    }
+
+    public void actionPerformed(ActionEvent e) {
+        if (e.getSource() == reportView.getBtnRefresh())
+            refresh();
+    }
+
+    // Everything is read from the in-memory totals, so this is quick even with years of orders; only the orders
+    // other terminals made since the last catch-up are read from the database first
+    public void refresh() {
+        reportView.getBtnRefresh().setEnabled(false);
+        reportView.getLabStatus().setText("Loading...");
+        User user = Application.getInstance().getCurrentUser();
+        Application.getInstance().getAsyncDataService()
+                .submit(() -> load(user))
+                .whenCompleteAsync((rows, ex) -> {
+                    reportView.getBtnRefresh().setEnabled(true);
+                    reportView.getLabStatus().setText(" ");
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    if (cause instanceof StoreService.RejectedException) {
+                        JOptionPane.showMessageDialog(null, cause.getMessage());
+                        return;
+                    }
+                    if (cause != null) {
+                        JOptionPane.showMessageDialog(null, "Failed to load sales reports. See logs for details.");
+                        return;
+                    }
+                    fill(reportView.getDays(), rows.get(0));
+                    fill(reportView.getProducts(), rows.get(1));
+                    fill(reportView.getSellers(), rows.get(2));
+                }, AsyncDataService.edt());
+    }
+
+    // Table rows for the three tabs, built off the event dispatch thread
+    private static List<List<Object[]>> load(User user) {
+        StoreService store = Application.getInstance().getStoreService();
+        SalesReports reports = store.salesReports(user);
+        try {
+            reports.catchUp();
+        } catch (SQLException ex) {
+            // Still worth showing: the totals are as of the last catch-up
+            System.out.println("Database access error!");
+            ex.printStackTrace();
+        }
+
+        List<Object[]> days = new ArrayList<>();
+        List<SalesReports.DayTotal> lastDays = store.revenueByDay(user, 30);
+        for (int i = lastDays.size() - 1; i >= 0; i--) {
+            SalesReports.DayTotal day = lastDays.get(i);
+            days.add(new Object[] { day.getDay(), day.getOrders(), Money.format(day.getRevenueCents()),
+                    Money.format(day.getTaxCents()) });
+        }
+
+        List<Object[]> products = new ArrayList<>();
+        for (SalesReports.Total total : reports.topProducts(TOP)) {
+            Product product = store.getProduct(total.getID());
+            products.add(new Object[] { total.getID(), product == null ? "" : product.getName(), total.getUnits(),
+                    Money.format(total.getRevenueCents()) });
+        }
+
+        List<Object[]> sellers = new ArrayList<>();
+        for (SalesReports.Total total : reports.topSellers(TOP)) {
+            sellers.add(new Object[] { total.getID(), total.getUnits(), Money.format(total.getRevenueCents()) });
+        }
+
+        List<List<Object[]>> rows = new ArrayList<>();
+        rows.add(days);
+        rows.add(products);
+        rows.add(sellers);
+        return rows;
+    }
+
+    private static void fill(DefaultTableModel model, List<Object[]> rows) {
+        model.setRowCount(0);
+        for (Object[] row : rows) model.addRow(row);
+    }
+}
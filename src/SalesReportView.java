@@ -0,0 +1,60 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+
+public class SalesReportView extends JFrame {
+
+    private DefaultTableModel days = new DefaultTableModel(new Object[] { "Day", "Orders", "Revenue", "Tax" }, 0);
+    private DefaultTableModel products = new DefaultTableModel(new Object[] { "Product ID", "Name", "Units", "Revenue" }, 0);
+    private DefaultTableModel sellers = new DefaultTableModel(new Object[] { "Seller ID", "Units", "Revenue" }, 0);
+
+    private JTabbedPane tabs = new JTabbedPane();
+    private JButton btnRefresh = new JButton("Refresh");
+    private JLabel labStatus = new JLabel(" ");
+
+    public SalesReportView() {
+        this.setTitle("Sales Reports");
+        this.setLayout(new BorderLayout());
+        this.setSize(600, 500);
+
+        tabs.addTab("Last 30 days", new JScrollPane(readOnlyTable(days)));
+        tabs.addTab("Top products", new JScrollPane(readOnlyTable(products)));
+        tabs.addTab("Top sellers", new JScrollPane(readOnlyTable(sellers)));
+        this.getContentPane().add(tabs, BorderLayout.CENTER);
+
+        JPanel panelButton = new JPanel();
+        panelButton.add(btnRefresh);
+        panelButton.add(labStatus);
+        this.getContentPane().add(panelButton, BorderLayout.SOUTH);
+    }
+
+    private static JTable readOnlyTable(DefaultTableModel model) {
+        JTable table = new JTable(model) {
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        table.setFillsViewportHeight(true);
+        return table;
+    }
+
+    public DefaultTableModel getDays() {
+        return days;
+    }
+
+    public DefaultTableModel getProducts() {
+        return products;
+    }
+
+    public DefaultTableModel getSellers() {
+        return sellers;
+    }
+
+    public JButton getBtnRefresh() {
+        return btnRefresh;
+    }
+
+    public JLabel getLabStatus() {
+        return labStatus;
+    }
+}
@@ -0,0 +1,518 @@
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sales figures for managers: revenue per day, per product and per seller, and the best sellers.
+ * Totals are kept in memory and updated as each order commits (DataAdapter.orderCommitted), so a report reads
+ * at most one number per day, product or seller instead of scanning orders JOIN orderLine. rebuild() recomputes
+ * everything from the database with a parallel fork-join scan over orderID ranges; it is run at startup and is
+ * safe to run again while orders keep coming in.
+ * Orders committed by other terminals only reach the totals through catchUp(), which scans the orders above the
+ * last ones it saw. Freshness is therefore: this terminal's orders at once, other terminals' orders as of the
+ * last catchUp (Application runs one every 30 seconds, and the report screen's Refresh runs one first).
+ * Revenue is the sum of line costs before tax, in cents. Per-seller figures group the product totals by each
+ * product's current seller, which is what a JOIN with products would give.
+ */
+public class SalesReports {
+
+    public static class DayTotal {
+        private final LocalDate day;
+        private final long orders;
+        private final long revenueCents;
+        private final long taxCents;
+
+        DayTotal(LocalDate day, long[] totals) {
+            this.day = day;
+            this.orders = totals[0];
+            this.revenueCents = totals[1];
+            this.taxCents = totals[2];
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public long getOrders() {
+            return orders;
+        }
+
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+
+        public long getTaxCents() {
+            return taxCents;
+        }
+    }
+
+    // Sales of one product, or of all products of one seller
+    public static class Total {
+        private final int id;
+        private long lines;
+        private double units;
+        private long revenueCents;
+
+        Total(int id) {
+            this.id = id;
+        }
+
+        public int getID() {
+            return id;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public double getUnits() {
+            return units;
+        }
+
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+
+        void add(long lines, double units, long revenueCents) {
+            this.lines += lines;
+            this.units += units;
+            this.revenueCents += revenueCents;
+        }
+
+        Total copy() {
+            Total copy = new Total(id);
+            copy.add(lines, units, revenueCents);
+            return copy;
+        }
+    }
+
+    private static final Comparator<Total> BY_REVENUE =
+            Comparator.comparingLong(Total::getRevenueCents).reversed().thenComparingInt(Total::getID);
+
+    // Orders per leaf of the rebuild scan; one query each
+    private static final int SCAN_CHUNK = 10_000;
+
+    // catchUp re-reads this many order IDs below the highest it has seen: another terminal can commit an order
+    // after a later ID was already visible, and counting an order twice is prevented by the bitmap anyway
+    private static final int CATCH_UP_LOOKBACK = 1000;
+
+    private static final String CATCH_UP_SQL =
+            "SELECT o.orderID, o.date, o.totalCost, o.totalTax, l.productID, l.quantity, l.cost " +
+            "FROM orders o LEFT JOIN orderLine l ON l.orderID = o.orderID " +
+            "WHERE o.orderID > ? ORDER BY o.orderID";
+
+    private static final String SCAN_SQL =
+            "SELECT o.orderID, o.date, o.totalCost, o.totalTax, l.productID, l.quantity, l.cost " +
+            "FROM orders o LEFT JOIN orderLine l ON l.orderID = o.orderID " +
+            "WHERE o.orderID BETWEEN ? AND ? ORDER BY o.orderID";
+
+    // One committed order, copied so the caller may keep changing its Order
+    private static class Sale {
+        final int orderID;
+        final LocalDate day;
+        final long revenueCents;
+        final long taxCents;
+        final int[] productIDs;
+        final double[] quantities;
+        final long[] costCents;
+
+        Sale(int orderID, LocalDate day, long revenueCents, long taxCents, int[] productIDs, double[] quantities,
+             long[] costCents) {
+            this.orderID = orderID;
+            this.day = day;
+            this.revenueCents = revenueCents;
+            this.taxCents = taxCents;
+            this.productIDs = productIDs;
+            this.quantities = quantities;
+            this.costCents = costCents;
+        }
+
+        Sale(Order order) {
+            OrderLines lines = order.getLineItems();
+            orderID = order.getOrderID();
+            day = day(order.getDate());
+            revenueCents = order.getTotalCostCents();
+            taxCents = order.getTotalTaxCents();
+            productIDs = new int[lines.size()];
+            quantities = new double[lines.size()];
+            costCents = new long[lines.size()];
+            for (int i = 0; i < lines.size(); i++) {
+                productIDs[i] = lines.productID(i);
+                quantities[i] = lines.quantity(i);
+                costCents[i] = lines.costCents(i);
+            }
+        }
+    }
+
+    // One complete set of totals. The bitmap of counted order IDs makes adding the same order twice harmless.
+    private static class Totals {
+        final TreeMap<LocalDate, long[]> days = new TreeMap<>();     // {orders, revenue, tax}
+        final HashMap<Integer, Total> products = new HashMap<>();
+        final BitSet counted = new BitSet();
+
+        boolean addOrder(int orderID, LocalDate day, long revenueCents, long taxCents) {
+            if (orderID <= 0 || counted.get(orderID)) return false;
+            counted.set(orderID);
+            long[] t = days.computeIfAbsent(day, k -> new long[3]);
+            t[0]++;
+            t[1] += revenueCents;
+            t[2] += taxCents;
+            return true;
+        }
+
+        void addLine(int productID, double quantity, long costCents) {
+            products.computeIfAbsent(productID, Total::new).add(1, quantity, costCents);
+        }
+
+        void add(Sale sale) {
+            if (!addOrder(sale.orderID, sale.day, sale.revenueCents, sale.taxCents)) return;
+            for (int i = 0; i < sale.productIDs.length; i++) {
+                addLine(sale.productIDs[i], sale.quantities[i], sale.costCents[i]);
+            }
+        }
+
+        // other covers different orders than this
+        void merge(Totals other) {
+            other.days.forEach((day, t) -> {
+                long[] mine = days.computeIfAbsent(day, k -> new long[3]);
+                for (int i = 0; i < 3; i++) mine[i] += t[i];
+            });
+            other.products.forEach((id, t) -> products.computeIfAbsent(id, Total::new).add(t.lines, t.units, t.revenueCents));
+            counted.or(other.counted);
+        }
+    }
+
+    private final DataAdapter dataAdapter;
+    private final Object rebuildLock = new Object();
+    private int scannedThrough;         // guarded by rebuildLock: the highest order ID a rebuild or catchUp read
+
+    // Guarded by this
+    private Totals live = new Totals();
+    private List<Sale> committedDuringRebuild;
+    private Map<Integer, Integer> sellersSavedDuringRebuild;
+    private boolean ready = false;
+
+    private volatile Map<Integer, Integer> sellers = new ConcurrentHashMap<>();     // productID -> sellerID
+
+    public SalesReports(DataAdapter dataAdapter) {
+        this.dataAdapter = dataAdapter;
+    }
+
+    // False until the first rebuild has finished; before that the figures only cover orders made since startup
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds a just-committed order to the totals. Called by DataAdapter for every order it commits.
+     */
+    public void orderCommitted(Order order) {
+        Sale sale = new Sale(order);
+        synchronized (this) {
+            live.add(sale);
+            if (committedDuringRebuild != null) committedDuringRebuild.add(sale);
+        }
+    }
+
+    // Keeps the product's seller current for the per-seller figures
+    public void productSaved(Product product) {
+        synchronized (this) {
+            sellers.put(product.getProductID(), product.getSellerID());
+            if (sellersSavedDuringRebuild != null) sellersSavedDuringRebuild.put(product.getProductID(), product.getSellerID());
+        }
+    }
+
+    /**
+     * Recomputes all totals from the database, splitting the orderID range into chunks that are scanned in
+     * parallel on up to parallelism pooled connections. Orders committed while it runs are counted exactly once:
+     * they are collected on the side and added to the new totals unless the scan already saw them.
+     * Returns the number of orders counted.
+     */
+    public long rebuild(int parallelism) throws SQLException {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            synchronized (this) {
+                committedDuringRebuild = new ArrayList<>();
+                sellersSavedDuringRebuild = new HashMap<>();
+            }
+            try {
+                Map<Integer, Integer> loadedSellers = loadSellers();
+                Totals scanned = new Totals();
+                int[] range = orderIDRange();
+                scannedThrough = range == null ? 0 : range[1];
+                if (range != null) {
+                    ForkJoinPool forkJoin = new ForkJoinPool(Math.max(1, parallelism));
+                    try {
+                        scanned = forkJoin.invoke(new ScanTask(range[0], range[1]));
+                    } catch (RuntimeException ex) {
+                        if (ex.getCause() instanceof SQLException) throw (SQLException) ex.getCause();
+                        throw ex;
+                    } finally {
+                        forkJoin.shutdown();
+                    }
+                }
+
+                long orders;
+                synchronized (this) {
+                    for (Sale sale : committedDuringRebuild) scanned.add(sale);
+                    loadedSellers.putAll(sellersSavedDuringRebuild);
+                    live = scanned;
+                    sellers = loadedSellers;
+                    ready = true;
+                    orders = live.counted.cardinality();
+                }
+                System.out.printf("Sales reports: %d orders in %.1f ms%n", orders, (System.nanoTime() - start) / 1e6);
+                return orders;
+            } finally {
+                synchronized (this) {
+                    committedDuringRebuild = null;
+                    sellersSavedDuringRebuild = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the orders other terminals committed since the last rebuild or catch-up. Orders already counted (this
+     * terminal's own, or ones seen before) are skipped. Does nothing before the first rebuild has finished.
+     * Returns the number of orders added.
+     */
+    public int catchUp() throws SQLException {
+        synchronized (rebuildLock) {
+            if (!isReady()) return 0;
+            List<Sale> sales = new ArrayList<>();
+            try (Connection connection = dataAdapter.getConnectionPool().getConnection();
+                 PreparedStatement ps = connection.prepareStatement(CATCH_UP_SQL)) {
+                ps.setInt(1, Math.max(0, scannedThrough - CATCH_UP_LOOKBACK));
+                try (ResultSet rs = ps.executeQuery()) {
+                    SaleRows order = null;
+                    while (rs.next()) {
+                        int orderID = rs.getInt(1);
+                        // Rows of one order are adjacent
+                        if (order == null || order.orderID != orderID) {
+                            if (order != null) sales.add(order.toSale());
+                            Timestamp date = rs.getTimestamp(2);
+                            order = new SaleRows(orderID, date == null ? LocalDate.MIN : date.toLocalDateTime().toLocalDate(),
+                                    Money.fromDecimal(rs.getBigDecimal(3)), Money.fromDecimal(rs.getBigDecimal(4)));
+                        }
+                        int productID = rs.getInt(5);
+                        if (rs.wasNull()) continue;
+                        order.addLine(productID, rs.getDouble(6), Money.fromDecimal(rs.getBigDecimal(7)));
+                    }
+                    if (order != null) sales.add(order.toSale());
+                }
+            }
+
+            int added = 0;
+            synchronized (this) {
+                for (Sale sale : sales) {
+                    if (live.counted.get(sale.orderID)) continue;
+                    live.add(sale);
+                    added++;
+                }
+            }
+            if (!sales.isEmpty()) scannedThrough = Math.max(scannedThrough, sales.get(sales.size() - 1).orderID);
+            return added;
+        }
+    }
+
+    // Collects the rows of one order read by catchUp
+    private static class SaleRows {
+        final int orderID;
+        final LocalDate day;
+        final long revenueCents;
+        final long taxCents;
+        final List<Integer> productIDs = new ArrayList<>();
+        final List<Double> quantities = new ArrayList<>();
+        final List<Long> costCents = new ArrayList<>();
+
+        SaleRows(int orderID, LocalDate day, long revenueCents, long taxCents) {
+            this.orderID = orderID;
+            this.day = day;
+            this.revenueCents = revenueCents;
+            this.taxCents = taxCents;
+        }
+
+        void addLine(int productID, double quantity, long cost) {
+            productIDs.add(productID);
+            quantities.add(quantity);
+            costCents.add(cost);
+        }
+
+        Sale toSale() {
+            int n = productIDs.size();
+            int[] ids = new int[n];
+            double[] units = new double[n];
+            long[] costs = new long[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = productIDs.get(i);
+                units[i] = quantities.get(i);
+                costs[i] = costCents.get(i);
+            }
+            return new Sale(orderID, day, revenueCents, taxCents, ids, units, costs);
+        }
+    }
+
+    /**
+     * Revenue per day from from to to, both included, oldest first. Days without orders are left out.
+     */
+    public synchronized List<DayTotal> revenueByDay(LocalDate from, LocalDate to) {
+        List<DayTotal> result = new ArrayList<>();
+        for (Map.Entry<LocalDate, long[]> e : live.days.subMap(from, true, to, true).entrySet()) {
+            result.add(new DayTotal(e.getKey(), e.getValue()));
+        }
+        return result;
+    }
+
+    // Sales of one product; all zero if it never sold
+    public synchronized Total productTotal(int productID) {
+        Total t = live.products.get(productID);
+        return t == null ? new Total(productID) : t.copy();
+    }
+
+    // The limit products with the most revenue, best first
+    public List<Total> topProducts(int limit) {
+        List<Total> products;
+        synchronized (this) {
+            products = top(live.products.values(), limit);
+        }
+        List<Total> copies = new ArrayList<>(products.size());
+        for (Total t : products) copies.add(t.copy());
+        return copies;
+    }
+
+    // Revenue of every seller, best first
+    public List<Total> revenueBySeller() {
+        return topSellers(Integer.MAX_VALUE);
+    }
+
+    // The limit sellers with the most revenue, best first. Seller 0 collects products whose seller is unknown.
+    public List<Total> topSellers(int limit) {
+        Map<Integer, Total> bySeller = new HashMap<>();
+        List<Integer> unknown = new ArrayList<>();
+        synchronized (this) {
+            Map<Integer, Integer> sellerOf = sellers;
+            for (Total product : live.products.values()) {
+                Integer seller = sellerOf.get(product.getID());
+                if (seller == null) {
+                    unknown.add(product.getID());
+                    continue;
+                }
+                bySeller.computeIfAbsent(seller, Total::new).add(product.lines, product.units, product.revenueCents);
+            }
+        }
+        // Products created elsewhere since the last rebuild; rare, and remembered once looked up
+        for (int productID : unknown) {
+            Product product = dataAdapter.loadProduct(productID);
+            int seller = product == null ? 0 : product.getSellerID();
+            if (product != null) sellers.put(productID, seller);
+            Total t = productTotal(productID);
+            bySeller.computeIfAbsent(seller, Total::new).add(t.lines, t.units, t.revenueCents);
+        }
+        return top(bySeller.values(), limit);
+    }
+
+    private static List<Total> top(Collection<Total> totals, int limit) {
+        if (limit <= 0) return new ArrayList<>();
+        PriorityQueue<Total> best = new PriorityQueue<>(Math.min(limit, totals.size()) + 1, BY_REVENUE.reversed());
+        for (Total t : totals) {
+            best.add(t);
+            if (best.size() > limit) best.poll();
+        }
+        List<Total> result = new ArrayList<>(best);
+        result.sort(BY_REVENUE);
+        return result;
+    }
+
+    private Map<Integer, Integer> loadSellers() throws SQLException {
+        Map<Integer, Integer> loaded = new ConcurrentHashMap<>();
+        try (Connection connection = dataAdapter.getConnectionPool().getConnection();
+             PreparedStatement ps = connection.prepareStatement("SELECT productID, sellerID FROM products");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) loaded.put(rs.getInt(1), rs.getInt(2));
+        }
+        return loaded;
+    }
+
+    // {min, max} of orders.orderID, or null if there are no orders
+    private int[] orderIDRange() throws SQLException {
+        try (Connection connection = dataAdapter.getConnectionPool().getConnection();
+             PreparedStatement ps = connection.prepareStatement("SELECT MIN(orderID), MAX(orderID) FROM orders");
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next() || rs.getObject(1) == null) return null;
+            return new int[] { rs.getInt(1), rs.getInt(2) };
+        }
+    }
+
+    // Scans [from, to] directly if it is small enough, otherwise splits it in two and scans both halves in parallel
+    private class ScanTask extends RecursiveTask<Totals> {
+        private final int from;
+        private final int to;
+
+        ScanTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute() {
+            if ((long) to - from < SCAN_CHUNK) {
+                try {
+                    return scan(from, to);
+                } catch (SQLException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            int mid = (int) (((long) from + to) >>> 1);
+            ScanTask left = new ScanTask(from, mid);
+            left.fork();
+            Totals right = new ScanTask(mid + 1, to).compute();
+            Totals totals = left.join();
+            totals.merge(right);
+            return totals;
+        }
+    }
+
+    private Totals scan(int from, int to) throws SQLException {
+        Totals totals = new Totals();
+        try (Connection connection = dataAdapter.getConnectionPool().getConnection();
+             PreparedStatement ps = connection.prepareStatement(SCAN_SQL)) {
+            ps.setInt(1, from);
+            ps.setInt(2, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int orderID = rs.getInt(1);
+                    // Rows of one order are adjacent; the header is counted on its first row
+                    if (!totals.counted.get(orderID)) {
+                        Timestamp date = rs.getTimestamp(2);
+                        totals.addOrder(orderID, date == null ? LocalDate.MIN : date.toLocalDateTime().toLocalDate(),
+                                Money.fromDecimal(rs.getBigDecimal(3)), Money.fromDecimal(rs.getBigDecimal(4)));
+                    }
+                    int productID = rs.getInt(5);
+                    if (rs.wasNull()) continue;
+                    totals.addLine(productID, rs.getDouble(6), Money.fromDecimal(rs.getBigDecimal(7)));
+                }
+            }
+        }
+        return totals;
+    }
+
+    // Orders carry LocalDateTime.toString(); an order without a readable date is filed under LocalDate.MIN
+    private static LocalDate day(String date) {
+        if (date == null || date.isEmpty()) return LocalDate.MIN;
+        try {
+            return LocalDateTime.parse(date).toLocalDate();
+        } catch (DateTimeParseException ex) {
+            try {
+                return Timestamp.valueOf(date).toLocalDateTime().toLocalDate();
+            } catch (IllegalArgumentException ignore) {
+                return LocalDate.MIN;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings the database schema up to date by applying numbered scripts named V<n>__<description>.sql
+ * from a migrations directory, in order, each exactly once.
+ * Applied versions are recorded in the schema_version table; nothing is ever dropped on startup.
+ * A MySQL named lock keeps two terminals that start at the same time from migrating concurrently.
+ */
+public class SchemaMigrator {
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String LOCK_NAME = "storeapp_schema_migration";
+
+    // Overrides where the scripts are read from, e.g. -Dstoreapp.migrations=/opt/storeapp/migrations
+    public static final String LOCATION_PROPERTY = "storeapp.migrations";
+
+    private final ConnectionPool pool;
+    private final Path migrationsDir;
+
+    public SchemaMigrator(ConnectionPool pool, Path migrationsDir) {
+        this.pool = pool;
+        this.migrationsDir = migrationsDir;
+    }
+
+    /**
+     * Where the application's migrations are: the directory named by the storeapp.migrations system property,
+     * else the migrations folder on the classpath (inside storeapp.jar, or next to the compiled classes), else
+     * src/migrations under the working directory for runs from a source checkout.
+     */
+    public static Path locateMigrations() throws IOException {
+        String configured = System.getProperty(LOCATION_PROPERTY);
+        if (configured != null) return Paths.get(configured);
+
+        URL url = SchemaMigrator.class.getClassLoader().getResource("migrations");
+        if (url == null) return Paths.get("src/migrations");
+        try {
+            URI uri = url.toURI();
+            if (!uri.getScheme().equals("jar")) return Paths.get(uri);
+            // jar:file:/.../storeapp.jar!/migrations; the jar's file system stays open for the life of the process
+            try {
+                FileSystems.newFileSystem(uri, Collections.emptyMap());
+            } catch (FileSystemAlreadyExistsException ignore) {}
+            return Paths.get(uri);
+        } catch (URISyntaxException ex) {
+            throw new IOException("Bad migrations location " + url, ex);
+        }
+    }
+
+    /**
+     * Applies all pending migrations and returns the schema version the database is at afterwards.
+     */
+    public int migrate() throws SQLException, IOException {
+        Map<Integer, Path> scripts = findScripts();
+        if (scripts.isEmpty()) throw new IOException("No migrations found in " + migrationsDir);
+
+        try (Connection connection = pool.getConnection()) {
+            lock(connection);
+            try {
+                ensureVersionTable(connection);
+                int current = currentVersion(connection);
+                for (Map.Entry<Integer, Path> e : scripts.entrySet()) {
+                    int version = e.getKey();
+                    if (version <= current) continue;
+
+                    String description = describe(e.getValue());
+                    System.out.println("Schema migration: applying V" + version + " " + description);
+                    long start = System.currentTimeMillis();
+                    new SqlScriptRunner(connection, 500, 5000, 0).run(e.getValue());
+                    recordVersion(connection, version, description, System.currentTimeMillis() - start);
+                    current = version;
+                }
+                System.out.println("Schema is at version " + current);
+                return current;
+            } finally {
+                unlock(connection);
+            }
+        }
+    }
+
+    private Map<Integer, Path> findScripts() throws IOException {
+        Map<Integer, Path> scripts = new TreeMap<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(migrationsDir, "V*__*.sql")) {
+            for (Path p : dir) {
+                Matcher m = FILE_NAME.matcher(p.getFileName().toString());
+                if (!m.matches()) continue;
+                Path previous = scripts.put(Integer.parseInt(m.group(1)), p);
+                if (previous != null) {
+                    throw new IOException("Two migrations share version " + m.group(1) + ": " + previous + " and " + p);
+                }
+            }
+        }
+        return scripts;
+    }
+
+    private static String describe(Path script) {
+        Matcher m = FILE_NAME.matcher(script.getFileName().toString());
+        return m.matches() ? m.group(2).replace('_', ' ') : script.getFileName().toString();
+    }
+
+    private static void ensureVersionTable(Connection connection) throws SQLException {
+        try (Statement s = connection.createStatement()) {
+            s.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "installedOn TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                    "executionMillis BIGINT NOT NULL)");
+        }
+    }
+
+    private static int currentVersion(Connection connection) throws SQLException {
+        try (Statement s = connection.createStatement();
+             ResultSet rs = s.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void recordVersion(Connection connection, int version, String description, long millis) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description, executionMillis) VALUES (?, ?, ?)")) {
+            ps.setInt(1, version);
+            ps.setString(2, description);
+            ps.setLong(3, millis);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void lock(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT GET_LOCK(?, 60)")) {
+            ps.setString(1, LOCK_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for another process to finish migrating the schema");
+                }
+            }
+        }
+    }
+
+    private static void unlock(Connection connection) {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException ignore) {}
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * Runs a SQL script while reading it, one statement at a time, so script size does not matter.
+ * The tokenizer understands '...', "..." and `...` quoting (with backslash and doubled-quote escapes),
+ * -- and # line comments, block comments and the mysql client's DELIMITER command.
+ * Consecutive INSERT/UPDATE/DELETE/REPLACE statements are sent as JDBC batches, and the work is committed
+ * every commitEvery statements; anything else (DDL, SET, ...) flushes the pending batch and runs on its own.
+ */
+public class SqlScriptRunner {
+
+    private final Connection connection;
+    private final int batchSize;
+    private final int commitEvery;
+    private final long progressEvery;
+
+    private Statement statement;
+    private int batched = 0;
+    private int sinceCommit = 0;
+    private long executed = 0;
+
+    public SqlScriptRunner(Connection connection, int batchSize, int commitEvery, long progressEvery) {
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.commitEvery = commitEvery;
+        this.progressEvery = progressEvery;
+    }
+
+    /**
+     * Runs every statement in the file and returns how many were executed.
+     */
+    public long run(Path script) throws IOException, SQLException {
+        long start = System.nanoTime();
+        boolean originalAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Reader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8);
+             Statement s = connection.createStatement()) {
+            statement = s;
+            Tokenizer tokenizer = new Tokenizer(reader);
+            String sql;
+            while ((sql = tokenizer.next()) != null) {
+                execute(sql);
+            }
+            flushBatch();
+            connection.commit();
+        } catch (IOException | SQLException | RuntimeException ex) {
+            try { connection.rollback(); } catch (SQLException ignore) {}
+            throw ex;
+        } finally {
+            statement = null;
+            try { connection.setAutoCommit(originalAutoCommit); } catch (SQLException ignore) {}
+        }
+        System.out.printf("SQL script %s: %d statements in %.1f ms%n", script, executed, (System.nanoTime() - start) / 1e6);
+        return executed;
+    }
+
+    private void execute(String sql) throws SQLException {
+        if (isDml(sql)) {
+            statement.addBatch(sql);
+            if (++batched >= batchSize) flushBatch();
+        } else {
+            flushBatch();
+            statement.execute(sql);
+        }
+        executed++;
+        if (++sinceCommit >= commitEvery) {
+            flushBatch();
+            connection.commit();
+            sinceCommit = 0;
+        }
+        if (progressEvery > 0 && executed % progressEvery == 0) {
+            System.out.println("SQL script: " + executed + " statements executed");
+        }
+    }
+
+    private void flushBatch() throws SQLException {
+        if (batched == 0) return;
+        statement.executeBatch();
+        statement.clearBatch();
+        batched = 0;
+    }
+
+    private static boolean isDml(String sql) {
+        int end = 0;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) end++;
+        String verb = sql.substring(0, end).toUpperCase(Locale.ROOT);
+        return verb.equals("INSERT") || verb.equals("UPDATE") || verb.equals("DELETE") || verb.equals("REPLACE");
+    }
+
+    // Splits a character stream into statements; only the statement being read is kept in memory
+    static class Tokenizer {
+        private final Reader in;
+        private int lookahead = -2;         // -2 means nothing buffered
+        private String delimiter = ";";
+        private final StringBuilder current = new StringBuilder();
+        private boolean atLineStart = true;
+
+        Tokenizer(Reader in) {
+            this.in = in;
+        }
+
+        private int read() throws IOException {
+            if (lookahead != -2) {
+                int c = lookahead;
+                lookahead = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private int peek() throws IOException {
+            if (lookahead == -2) lookahead = in.read();
+            return lookahead;
+        }
+
+        /**
+         * Returns the next statement without its delimiter, trimmed, or null at end of input.
+         */
+        String next() throws IOException {
+            current.setLength(0);
+            while (true) {
+                // DELIMITER is a client command and only valid at the start of a line
+                if (atLineStart && isBlank(current) && startsDelimiterCommand()) continue;
+
+                int c = read();
+                if (c == -1) {
+                    String last = current.toString().trim();
+                    return last.isEmpty() ? null : last;
+                }
+                atLineStart = c == '\n';
+
+                if (c == '\'' || c == '"' || c == '`') {
+                    readQuoted((char) c);
+                } else if (c == '-' && peek() == '-') {
+                    read();
+                    skipLine();
+                } else if (c == '#') {
+                    skipLine();
+                } else if (c == '/' && peek() == '*') {
+                    read();
+                    skipBlockComment();
+                    current.append(' ');
+                } else {
+                    current.append((char) c);
+                    if (endsWithDelimiter()) {
+                        current.setLength(current.length() - delimiter.length());
+                        String sql = current.toString().trim();
+                        if (!sql.isEmpty()) return sql;
+                        current.setLength(0);
+                    }
+                }
+            }
+        }
+
+        private void readQuoted(char quote) throws IOException {
+            current.append(quote);
+            while (true) {
+                int c = read();
+                if (c == -1) throw new IOException("Unterminated " + quote + " quoted string in SQL script");
+                current.append((char) c);
+                if (c == '\\' && quote != '`') {
+                    int escaped = read();
+                    if (escaped == -1) throw new IOException("Unterminated escape in SQL script");
+                    current.append((char) escaped);
+                } else if (c == quote) {
+                    if (peek() == quote) {
+                        current.append((char) read());      // doubled quote stays inside the string
+                    } else {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void skipLine() throws IOException {
+            int c;
+            while ((c = read()) != -1 && c != '\n') { }
+            current.append('\n');
+            atLineStart = true;
+        }
+
+        private void skipBlockComment() throws IOException {
+            int prev = 0, c;
+            while ((c = read()) != -1) {
+                if (prev == '*' && c == '/') return;
+                prev = c;
+            }
+            throw new IOException("Unterminated block comment in SQL script");
+        }
+
+        private boolean endsWithDelimiter() {
+            int n = delimiter.length();
+            int len = current.length();
+            if (len < n) return false;
+            for (int i = 0; i < n; i++) {
+                if (current.charAt(len - n + i) != delimiter.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        // Consumes "DELIMITER xx" lines; anything else read while checking is kept as statement text
+        private boolean startsDelimiterCommand() throws IOException {
+            String keyword = "DELIMITER";
+            StringBuilder seen = new StringBuilder();
+            int c;
+            while (seen.length() < keyword.length()) {
+                c = peek();
+                if (c == -1 || Character.toUpperCase(c) != keyword.charAt(seen.length())) break;
+                seen.append((char) read());
+            }
+            if (seen.length() == keyword.length() && (peek() == ' ' || peek() == '\t')) {
+                StringBuilder line = new StringBuilder();
+                while ((c = read()) != -1 && c != '\n') line.append((char) c);
+                String newDelimiter = line.toString().trim();
+                if (newDelimiter.isEmpty()) throw new IOException("DELIMITER without a delimiter in SQL script");
+                delimiter = newDelimiter;
+                atLineStart = true;
+                return true;
+            }
+            // Not a DELIMITER command: hand the characters back as ordinary statement text
+            atLineStart = false;
+            current.append(seen);
+            return false;
+        }
+
+        private static boolean isBlank(CharSequence s) {
+            for (int i = 0; i < s.length(); i++) {
+                if (!Character.isWhitespace(s.charAt(i))) return false;
+            }
+            return true;
+        }
+    }
+}
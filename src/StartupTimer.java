@@ -0,0 +1,18 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Prints how long after JVM launch each startup milestone was reached, e.g.
+ * "STARTUP login window interactive 412 ms". storeapp.bench.StartupBenchmark (benchmarks module) parses these lines.
+ */
+public class StartupTimer {
+
+    private static final long JVM_START = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    public static long elapsedMillis() {
+        return System.currentTimeMillis() - JVM_START;
+    }
+
+    public static void mark(String milestone) {
+        System.out.println("STARTUP " + milestone + " " + elapsedMillis() + " ms");
+    }
+}
@@ -0,0 +1,192 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ * Callers get a wrapper whose close() hands the statement back to the cache instead of closing it,
+ * so the driver does not have to parse the same SQL again on the next call. The wrapper (and result sets it returns)
+ * report the caller's pooled connection from getConnection(), never the physical one.
+ */
+public class StatementCache {
+
+    private final Connection connection;
+    private final int maxSize;
+
+    // Only idle statements live in the map; a statement that is handed out is removed until it is closed again
+    private final LinkedHashMap<String, PreparedStatement> idle;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.idle = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    closeQuietly(eldest.getValue());
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // owner is the connection the caller borrowed; it is what the statement's getConnection() returns
+    public PreparedStatement prepare(Connection owner, String sql) throws SQLException {
+        return prepare(owner, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    public PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        PreparedStatement ps;
+        synchronized (this) {
+            ps = idle.remove(key);
+        }
+        if (ps != null && !ps.isClosed()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            ps = connection.prepareStatement(sql, autoGeneratedKeys);
+        }
+        return wrap(key, ps, owner);
+    }
+
+    private void giveBack(String key, PreparedStatement ps) {
+        try {
+            if (ps.isClosed()) return;
+            ps.clearParameters();
+            ps.clearBatch();
+        } catch (SQLException ex) {
+            closeQuietly(ps);
+            return;
+        }
+        PreparedStatement previous;
+        synchronized (this) {
+            // Same SQL may have been checked out twice; keep one copy and close the other
+            previous = idle.put(key, ps);
+        }
+        if (previous != null && previous != ps) closeQuietly(previous);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return idle.size();
+    }
+
+    public synchronized void closeAll() {
+        Iterator<PreparedStatement> it = idle.values().iterator();
+        while (it.hasNext()) {
+            closeQuietly(it.next());
+            it.remove();
+        }
+    }
+
+    private static void closeQuietly(Statement s) {
+        try { s.close(); } catch (SQLException ignore) {}
+    }
+
+    /**
+     * Wraps a statement that is not cached so that it, and its result sets, report owner as their connection.
+     */
+    static Statement wrapUncached(Statement statement, Connection owner) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return ownResultSet(invoke(statement, method, args), (Statement) proxy);
+        };
+        return (Statement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    // A result set's getStatement() must return the wrapper, or its getConnection() would reach the physical connection
+    private static Object ownResultSet(Object result, Statement owner) {
+        if (!(result instanceof ResultSet)) return result;
+        ResultSet rs = (ResultSet) result;
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getStatement":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return invoke(rs, method, args);
+            }
+        };
+        return Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class<?>[] { ResultSet.class }, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private PreparedStatement wrap(String key, PreparedStatement ps, Connection owner) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!released) {
+                            released = true;
+                            giveBack(key, ps);
+                        }
+                        return null;
+                    case "isClosed":
+                        return released || ps.isClosed();
+                    case "getConnection":
+                        return owner;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+                if (released) throw new SQLException("Statement has already been closed");
+                return ownResultSet(StatementCache.invoke(ps, method, args), (Statement) proxy);
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                handler);
+    }
+}
@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds stock for items that are sitting in an open Order so two checkouts cannot both take the last unit.
+ * Per-product counters are guarded by a fixed set of striped locks, so checkouts on different products never
+ * contend and checkouts on the same hot product only hold a lock for a few arithmetic operations.
+ * The in-memory view is only a fast first line of defence: saveOrder's conditional "quantity >= ?" update
+ * is what finally guarantees stock never goes negative, even with other processes writing to the table.
+ */
+public class StockReservationService implements AutoCloseable {
+
+    private static final int STRIPES = 64;
+    private static final double EPSILON = 1e-9;
+
+    private final DataAdapter dataAdapter;
+    private final long holdMillis;
+
+    private final Object[] stripes = new Object[STRIPES];
+    private final Map<Integer, StockLevel> levels = new ConcurrentHashMap<>();
+    private final Map<Object, List<Reservation>> reservationsByOwner = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService expirer;
+
+    public StockReservationService(DataAdapter dataAdapter, long holdMillis) {
+        this.dataAdapter = dataAdapter;
+        this.holdMillis = holdMillis;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+
+        expirer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-reservation-expirer");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, holdMillis / 4);
+        expirer.scheduleWithFixedDelay(this::releaseExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reserves quantity of a product for the given owner (normally the Order being built).
+     * Returns false if there is not enough unreserved stock or the product does not exist.
+     */
+    public boolean reserve(Object owner, int productID, double quantity) {
+        if (quantity < 0) return false;
+        StockLevel level = level(productID, false);
+        if (level == null) return false;
+
+        if (!tryReserve(level, productID, quantity)) {
+            // Our copy of the stock might be stale (e.g. restocked by another terminal); re-read once before refusing
+            level = level(productID, true);
+            if (level == null || !tryReserve(level, productID, quantity)) return false;
+        }
+
+        Reservation r = new Reservation(productID, quantity, System.currentTimeMillis() + holdMillis);
+        // Atomic with the expiry sweep, which removes owners whose list it finds empty
+        reservationsByOwner.compute(owner, (k, list) -> {
+            if (list == null) list = new ArrayList<>();
+            synchronized (list) {
+                list.add(r);
+            }
+            return list;
+        });
+        return true;
+    }
+
+    /**
+     * Called after the owner's order, with the given lines, was committed: the reserved units are now gone from
+     * stock for good. Units the order took without a live hold (it expired before payment) were never counted
+     * here, so those products are re-read from the database next time.
+     */
+    public void commit(Object owner, OrderLines lines) {
+        List<Reservation> list = reservationsByOwner.remove(owner);
+        Map<Integer, Double> held = new HashMap<>();
+        if (list != null) {
+            synchronized (list) {
+                for (Reservation r : list) {
+                    if (r.released) continue;
+                    r.released = true;
+                    held.merge(r.productID, r.quantity, Double::sum);
+                    StockLevel level = levels.get(r.productID);
+                    if (level == null) continue;
+                    synchronized (stripe(r.productID)) {
+                        level.reserved -= r.quantity;
+                        level.onHand -= r.quantity;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            if (held.getOrDefault(lines.productID(i), 0.0) + EPSILON < lines.quantity(i)) invalidate(lines.productID(i));
+        }
+    }
+
+    /**
+     * Gives back everything the owner holds, e.g. when an order is cancelled or could not be saved.
+     */
+    public void release(Object owner) {
+        List<Reservation> list = reservationsByOwner.remove(owner);
+        if (list == null) return;
+        synchronized (list) {
+            for (Reservation r : list) releaseOne(r);
+        }
+    }
+
+    /**
+     * Gives back what the owner holds of one product, e.g. when that line is taken out of the order.
+     */
+    public void release(Object owner, int productID) {
+        List<Reservation> list = reservationsByOwner.get(owner);
+        if (list == null) return;
+        synchronized (list) {
+            for (Reservation r : list) {
+                if (r.productID == productID) releaseOne(r);
+            }
+        }
+    }
+
+    /**
+     * Forgets what we know about a product's stock, so the next reservation re-reads it from the database.
+     * Outstanding reservations are kept.
+     */
+    public void invalidate(int productID) {
+        StockLevel level = levels.get(productID);
+        if (level == null) return;
+        synchronized (stripe(productID)) {
+            level.stale = true;
+        }
+    }
+
+    // Unreserved stock as currently known, or NaN if the product has not been touched yet
+    public double getAvailable(int productID) {
+        StockLevel level = levels.get(productID);
+        if (level == null) return Double.NaN;
+        synchronized (stripe(productID)) {
+            return level.onHand - level.reserved;
+        }
+    }
+
+    private boolean tryReserve(StockLevel level, int productID, double quantity) {
+        synchronized (stripe(productID)) {
+            if (level.onHand - level.reserved + EPSILON < quantity) return false;
+            level.reserved += quantity;
+            return true;
+        }
+    }
+
+    private void releaseOne(Reservation r) {
+        if (r.released) return;
+        r.released = true;
+        StockLevel level = levels.get(r.productID);
+        if (level == null) return;
+        synchronized (stripe(r.productID)) {
+            level.reserved -= r.quantity;
+        }
+    }
+
+    // Also drops released holds and owners left with none, so abandoned orders do not stay in the map
+    private void releaseExpired() {
+        long now = System.currentTimeMillis();
+        for (Object owner : reservationsByOwner.keySet()) {
+            reservationsByOwner.computeIfPresent(owner, (k, list) -> {
+                synchronized (list) {
+                    for (Reservation r : list) {
+                        if (!r.released && r.expiresAt < now) releaseOne(r);
+                    }
+                    list.removeIf(r -> r.released);
+                    return list.isEmpty() ? null : list;
+                }
+            });
+        }
+    }
+
+    // Owners with at least one hold, released or not, that the expiry sweep has not dropped yet
+    public int getOwnerCount() {
+        return reservationsByOwner.size();
+    }
+
+    // Returns the product's stock level, loading it (outside any stripe lock) when unknown, stale or forced
+    private StockLevel level(int productID, boolean forceReload) {
+        StockLevel level = levels.get(productID);
+        if (level != null && !forceReload && !level.stale) return level;
+
+        // Bypass the catalog snapshot and product cache: reservations need the freshest stock we can get
+        Product product = dataAdapter.reloadProduct(productID);
+        if (product == null) return level;       // keep whatever we had if the product vanished or the DB failed
+
+        synchronized (stripe(productID)) {
+            level = levels.computeIfAbsent(productID, k -> new StockLevel());
+            level.onHand = product.getQuantity();
+            level.stale = false;
+            return level;
+        }
+    }
+
+    private Object stripe(int productID) {
+        return stripes[(productID * 0x9E3779B9 >>> 26) & (STRIPES - 1)];
+    }
+
+    @Override
+    public void close() {
+        expirer.shutdownNow();
+    }
+
+    private static class StockLevel {
+        double onHand;          // last known quantity in the products table, minus what we committed since
+        double reserved;        // held by open orders
+        boolean stale = true;
+    }
+
+    private static class Reservation {
+        final int productID;
+        final double quantity;
+        final long expiresAt;
+        boolean released;
+
+        Reservation(int productID, double quantity, long expiresAt) {
+            this.productID = productID;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
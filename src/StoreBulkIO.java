@@ -0,0 +1,604 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.Arrays;
+
+/**
+ * Streams the store tables to and from files without holding a table in memory.
+ * Two formats are supported:
+ *   - CSV with a header line; strings are always quoted and an unquoted NULL means SQL NULL, which is exactly
+ *     what MySQL's LOAD DATA understands, so imports go through LOAD DATA LOCAL INFILE when the server allows it
+ *     and fall back to batched upserts otherwise.
+ *   - A compact columnar binary format: rows are written in blocks of BLOCK_ROWS, and inside a block every column
+ *     is stored contiguously with a null bitmap in front.
+ * All file I/O goes through FileChannels and one direct buffer per file, so memory use does not grow with the table.
+ *
+ * Usage: java StoreBulkIO export|import csv|bin <directory>
+ */
+public class StoreBulkIO {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BLOCK_ROWS = 4096;
+    private static final int MAGIC = 0x53544F52;         // "STOR"
+    private static final int VERSION = 1;
+
+    private static final byte INT = 1, DOUBLE = 2, STRING = 3, BOOLEAN = 4;
+
+    // Tables in foreign key order; DECIMAL columns travel as DOUBLE, matching how the app reads them
+    private static final Table[] TABLES = {
+        new Table("users", "userID",
+            new String[] {"userID", "username", "userPassword", "fullName", "isManager"},
+            new byte[] {INT, STRING, STRING, STRING, BOOLEAN}),
+        new Table("products", "productID",
+            new String[] {"productID", "productName", "price", "quantity", "sellerID"},
+            new byte[] {INT, STRING, DOUBLE, DOUBLE, INT}),
+        new Table("orders", "orderID",
+            new String[] {"orderID", "buyerID", "totalCost", "totalTax", "date"},
+            new byte[] {INT, INT, DOUBLE, DOUBLE, STRING}),
+        new Table("orderLine", "orderID, productID",
+            new String[] {"orderID", "productID", "quantity", "cost"},
+            new byte[] {INT, INT, DOUBLE, DOUBLE}),
+    };
+
+    private final ConnectionPool pool;
+    private final int commitSize;
+
+    public StoreBulkIO(ConnectionPool pool, int commitSize) {
+        this.pool = pool;
+        this.commitSize = commitSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || !(args[0].equals("export") || args[0].equals("import"))
+                || !(args[1].equals("csv") || args[1].equals("bin"))) {
+            System.err.println("Usage: java StoreBulkIO export|import csv|bin <directory>");
+            System.exit(1);
+        }
+        Path dir = Paths.get(args[2]).toAbsolutePath();
+        Files.createDirectories(dir);
+
+        Class.forName("com.mysql.cj.jdbc.Driver");
+        // LOAD DATA LOCAL is only allowed for files inside the directory we were pointed at
+        String url = "jdbc:mysql://localhost:3306/storeapp?rewriteBatchedStatements=true"
+                + "&allowLoadLocalInfileInPath=" + dir;
+        try (ConnectionPool pool = new ConnectionPool(url, "root", "1234", 1, 2, 5000)) {
+            StoreBulkIO io = new StoreBulkIO(pool, 50000);
+            boolean csv = args[1].equals("csv");
+            if (args[0].equals("export")) io.exportAll(dir, csv);
+            else io.importAll(dir, csv);
+        }
+    }
+
+    public void exportAll(Path dir, boolean csv) throws SQLException, IOException {
+        for (Table t : TABLES) {
+            Path file = dir.resolve(t.name + (csv ? ".csv" : ".bin"));
+            long start = System.nanoTime();
+            long rows = csv ? exportCsv(t, file) : exportBinary(t, file);
+            report("Exported", t, rows, start);
+        }
+    }
+
+    public void importAll(Path dir, boolean csv) throws SQLException, IOException {
+        for (Table t : TABLES) {
+            Path file = dir.resolve(t.name + (csv ? ".csv" : ".bin"));
+            if (!Files.exists(file)) {
+                System.out.println("Bulk import: " + file + " not found, skipped");
+                continue;
+            }
+            long start = System.nanoTime();
+            long rows = csv ? importCsv(t, file) : importBinary(t, file);
+            report("Imported", t, rows, start);
+        }
+    }
+
+    // ---------------------------------------------------------------- export
+
+    private ResultSet streamTable(Connection connection, Statement s, Table t) throws SQLException {
+        // With this fetch size MySQL streams rows instead of buffering the whole result set
+        s.setFetchSize(Integer.MIN_VALUE);
+        return s.executeQuery("SELECT " + String.join(", ", t.columns) + " FROM " + t.name + " ORDER BY " + t.orderBy);
+    }
+
+    public long exportCsv(Table t, Path file) throws SQLException, IOException {
+        long rows = 0;
+        try (Connection connection = pool.getConnection();
+             Statement s = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = streamTable(connection, s, t);
+             ChannelWriter out = new ChannelWriter(file)) {
+            StringBuilder line = new StringBuilder(256);
+            line.append(String.join(",", t.columns)).append('\n');
+            out.write(line);
+            while (rs.next()) {
+                line.setLength(0);
+                for (int c = 0; c < t.columns.length; c++) {
+                    if (c > 0) line.append(',');
+                    // getString keeps DECIMAL values exact in text form
+                    String v = t.types[c] == BOOLEAN ? (rs.getBoolean(c + 1) ? "1" : "0") : rs.getString(c + 1);
+                    if (rs.wasNull()) line.append("NULL");
+                    else if (t.types[c] == STRING) appendQuoted(line, v);
+                    else line.append(v);
+                }
+                line.append('\n');
+                out.write(line);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    public long exportBinary(Table t, Path file) throws SQLException, IOException {
+        long rows = 0;
+        int n = t.columns.length;
+        Block block = new Block(t);
+        try (Connection connection = pool.getConnection();
+             Statement s = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = streamTable(connection, s, t);
+             ChannelWriter out = new ChannelWriter(file)) {
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putString(t.name);
+            out.putInt(n);
+            for (int c = 0; c < n; c++) {
+                out.putString(t.columns[c]);
+                out.putByte(t.types[c]);
+            }
+
+            while (rs.next()) {
+                int r = block.rows;
+                for (int c = 0; c < n; c++) {
+                    switch (t.types[c]) {
+                        case INT:     block.ints[c][r] = rs.getInt(c + 1); break;
+                        case DOUBLE:  block.doubles[c][r] = rs.getDouble(c + 1); break;
+                        case BOOLEAN: block.ints[c][r] = rs.getBoolean(c + 1) ? 1 : 0; break;
+                        default:      block.strings[c][r] = rs.getString(c + 1); break;
+                    }
+                    block.nulls[c][r] = rs.wasNull();
+                }
+                if (++block.rows == BLOCK_ROWS) {
+                    block.write(out);
+                }
+                rows++;
+            }
+            if (block.rows > 0) block.write(out);
+            out.putInt(0);        // empty block marks the end
+        }
+        return rows;
+    }
+
+    // ---------------------------------------------------------------- import
+
+    public long importCsv(Table t, Path file) throws SQLException, IOException {
+        try (Connection connection = pool.getConnection()) {
+            try {
+                return loadData(connection, t, file);
+            } catch (SQLException ex) {
+                // local_infile is often disabled on the server; parse the file ourselves instead
+                System.out.println("Bulk import: LOAD DATA not available (" + ex.getMessage() + "), using batched inserts");
+            }
+        }
+        try (Reader reader = Channels.newReader(FileChannel.open(file, StandardOpenOption.READ), StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE);
+             Upserter upserter = new Upserter(t)) {
+            CsvReader csv = new CsvReader(reader);
+            String[] header = csv.next();
+            if (header == null) return 0;
+            if (!Arrays.equals(header, t.columns)) {
+                throw new IOException("Unexpected CSV header in " + file + ": " + Arrays.toString(header));
+            }
+            String[] fields;
+            while ((fields = csv.next()) != null) {
+                for (int c = 0; c < t.columns.length; c++) {
+                    upserter.ps.setString(c + 1, fields[c]);
+                }
+                upserter.add();
+            }
+            return upserter.finish();
+        }
+    }
+
+    private long loadData(Connection connection, Table t, Path file) throws SQLException {
+        String path = file.toAbsolutePath().toString().replace("\\", "\\\\").replace("'", "\\'");
+        String sql = "LOAD DATA LOCAL INFILE '" + path + "' REPLACE INTO TABLE " + t.name
+                + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''"
+                + " LINES TERMINATED BY '\\n' IGNORE 1 LINES (" + String.join(", ", t.columns) + ")";
+        try (Statement s = connection.createStatement()) {
+            s.execute("SET FOREIGN_KEY_CHECKS = 0");
+            try {
+                return s.executeUpdate(sql);
+            } finally {
+                s.execute("SET FOREIGN_KEY_CHECKS = 1");
+            }
+        }
+    }
+
+    public long importBinary(Table t, Path file) throws SQLException, IOException {
+        int n = t.columns.length;
+        try (ChannelReader in = new ChannelReader(file);
+             Upserter upserter = new Upserter(t)) {
+            if (in.getInt() != MAGIC) throw new IOException(file + " is not a store export file");
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported export version " + version + " in " + file);
+            String table = in.getString();
+            if (!table.equals(t.name)) throw new IOException(file + " holds table " + table + ", expected " + t.name);
+            if (in.getInt() != n) throw new IOException("Column count mismatch in " + file);
+            for (int c = 0; c < n; c++) {
+                String col = in.getString();
+                byte type = in.getByte();
+                if (!col.equals(t.columns[c]) || type != t.types[c]) {
+                    throw new IOException("Column " + c + " mismatch in " + file + ": " + col);
+                }
+            }
+
+            Block block = new Block(t);
+            while (block.read(in)) {
+                for (int r = 0; r < block.rows; r++) {
+                    for (int c = 0; c < n; c++) {
+                        PreparedStatement ps = upserter.ps;
+                        if (block.nulls[c][r]) {
+                            ps.setNull(c + 1, t.sqlType(c));
+                            continue;
+                        }
+                        switch (t.types[c]) {
+                            case INT:     ps.setInt(c + 1, block.ints[c][r]); break;
+                            case DOUBLE:  ps.setDouble(c + 1, block.doubles[c][r]); break;
+                            case BOOLEAN: ps.setBoolean(c + 1, block.ints[c][r] != 0); break;
+                            default:      ps.setString(c + 1, block.strings[c][r]); break;
+                        }
+                    }
+                    upserter.add();
+                }
+            }
+            return upserter.finish();
+        }
+    }
+
+    // Batched upserts on one connection, committed every commitSize rows, with foreign key checks off
+    private class Upserter implements AutoCloseable {
+        final Connection connection;
+        final PreparedStatement ps;
+        long rows = 0;
+        int inBatch = 0;
+
+        Upserter(Table t) throws SQLException {
+            connection = pool.getConnection();
+            connection.setAutoCommit(false);
+            try (Statement s = connection.createStatement()) {
+                s.execute("SET FOREIGN_KEY_CHECKS = 0");
+            }
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(t.name).append(" (")
+                    .append(String.join(", ", t.columns)).append(") VALUES (");
+            for (int c = 0; c < t.columns.length; c++) sql.append(c == 0 ? "?" : ", ?");
+            sql.append(") ON DUPLICATE KEY UPDATE ");
+            for (int c = 0; c < t.columns.length; c++) {
+                if (c > 0) sql.append(", ");
+                sql.append(t.columns[c]).append("=VALUES(").append(t.columns[c]).append(')');
+            }
+            ps = connection.prepareStatement(sql.toString());
+        }
+
+        void add() throws SQLException {
+            ps.addBatch();
+            rows++;
+            if (++inBatch == 1000) {
+                ps.executeBatch();
+                inBatch = 0;
+            }
+            if (rows % commitSize == 0) {
+                connection.commit();
+            }
+        }
+
+        long finish() throws SQLException {
+            if (inBatch > 0) ps.executeBatch();
+            inBatch = 0;
+            connection.commit();
+            return rows;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try (Statement s = connection.createStatement()) {
+                s.execute("SET FOREIGN_KEY_CHECKS = 1");
+            } finally {
+                ps.close();
+                connection.close();     // the pool rolls back anything left uncommitted
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- formats
+
+    private static void appendQuoted(StringBuilder sb, String v) {
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char ch = v.charAt(i);
+            if (ch == '"') sb.append('"');
+            sb.append(ch);
+        }
+        sb.append('"');
+    }
+
+    // One block of rows held column by column; reused for every block so memory stays constant
+    private static class Block {
+        final Table t;
+        final int[][] ints;
+        final double[][] doubles;
+        final String[][] strings;
+        final boolean[][] nulls;
+        int rows;
+
+        Block(Table t) {
+            this.t = t;
+            int n = t.columns.length;
+            ints = new int[n][];
+            doubles = new double[n][];
+            strings = new String[n][];
+            nulls = new boolean[n][BLOCK_ROWS];
+            for (int c = 0; c < n; c++) {
+                switch (t.types[c]) {
+                    case INT: case BOOLEAN: ints[c] = new int[BLOCK_ROWS]; break;
+                    case DOUBLE:            doubles[c] = new double[BLOCK_ROWS]; break;
+                    default:                strings[c] = new String[BLOCK_ROWS]; break;
+                }
+            }
+        }
+
+        void write(ChannelWriter out) throws IOException {
+            out.putInt(rows);
+            for (int c = 0; c < t.columns.length; c++) {
+                byte[] bitmap = new byte[(rows + 7) >>> 3];
+                for (int r = 0; r < rows; r++) {
+                    if (nulls[c][r]) bitmap[r >>> 3] |= (byte) (1 << (r & 7));
+                }
+                out.putBytes(bitmap);
+                for (int r = 0; r < rows; r++) {
+                    if (nulls[c][r]) continue;        // nulls take no space in the value area
+                    switch (t.types[c]) {
+                        case INT:     out.putInt(ints[c][r]); break;
+                        case DOUBLE:  out.putDouble(doubles[c][r]); break;
+                        case BOOLEAN: out.putByte((byte) ints[c][r]); break;
+                        default:      out.putString(strings[c][r]); break;
+                    }
+                }
+            }
+            rows = 0;
+        }
+
+        boolean read(ChannelReader in) throws IOException {
+            rows = in.getInt();
+            if (rows == 0) return false;
+            if (rows < 0 || rows > BLOCK_ROWS) throw new IOException("Corrupt block header: " + rows + " rows");
+            byte[] bitmap = new byte[(BLOCK_ROWS + 7) >>> 3];
+            for (int c = 0; c < t.columns.length; c++) {
+                int bitmapBytes = (rows + 7) >>> 3;
+                in.getBytes(bitmap, bitmapBytes);
+                for (int r = 0; r < rows; r++) {
+                    nulls[c][r] = (bitmap[r >>> 3] & (1 << (r & 7))) != 0;
+                    if (nulls[c][r]) continue;
+                    switch (t.types[c]) {
+                        case INT:     ints[c][r] = in.getInt(); break;
+                        case DOUBLE:  doubles[c][r] = in.getDouble(); break;
+                        case BOOLEAN: ints[c][r] = in.getByte(); break;
+                        default:      strings[c][r] = in.getString(); break;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    // Buffered writer over a FileChannel using one direct buffer
+    private static class ChannelWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(CharSequence text) throws IOException {
+            putBytes(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        void putByte(byte b) throws IOException {
+            ensure(1);
+            buf.put(b);
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        void putDouble(double v) throws IOException {
+            ensure(8);
+            buf.putDouble(v);
+        }
+
+        void putString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int off = 0;
+            while (off < bytes.length) {
+                if (!buf.hasRemaining()) flush();
+                int n = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, n);
+                off += n;
+            }
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() < n) flush();
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Buffered reader over a FileChannel using one direct buffer
+    private static class ChannelReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelReader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buf.limit(0);
+        }
+
+        byte getByte() throws IOException {
+            require(1);
+            return buf.get();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buf.getInt();
+        }
+
+        double getDouble() throws IOException {
+            require(8);
+            return buf.getDouble();
+        }
+
+        String getString() throws IOException {
+            int len = getInt();
+            if (len < 0) throw new IOException("Corrupt string length " + len);
+            byte[] bytes = new byte[len];
+            getBytes(bytes, len);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void getBytes(byte[] dst, int len) throws IOException {
+            int off = 0;
+            while (off < len) {
+                if (!buf.hasRemaining()) require(1);
+                int n = Math.min(buf.remaining(), len - off);
+                buf.get(dst, off, n);
+                off += n;
+            }
+        }
+
+        private void require(int n) throws IOException {
+            if (buf.remaining() >= n) return;
+            buf.compact();
+            while (buf.position() < n) {
+                if (channel.read(buf) < 0) throw new EOFException("Unexpected end of export file");
+            }
+            buf.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Minimal RFC 4180 reader; an unquoted NULL field is returned as null, like LOAD DATA reads it
+    private static class CsvReader {
+        private final Reader in;
+        private int pending = -2;       // one character of lookahead, -2 when empty
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        String[] next() throws IOException {
+            java.util.List<String> fields = new java.util.ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int c = read();
+            if (c == -1) return null;
+            while (true) {
+                if (c == '"' && field.length() == 0 && !quoted) {
+                    quoted = true;
+                    // read the quoted section until the closing quote
+                    while (true) {
+                        c = read();
+                        if (c == -1) throw new EOFException("Unterminated quoted CSV field");
+                        if (c == '"') {
+                            int d = read();
+                            if (d == '"') { field.append('"'); continue; }
+                            pending = d;
+                            break;
+                        }
+                        field.append((char) c);
+                    }
+                    c = read();
+                    continue;
+                }
+                if (c == ',' || c == '\n' || c == -1) {
+                    String v = field.toString();
+                    if (!quoted && v.equals("NULL")) v = null;
+                    if (!quoted && v != null && v.endsWith("\r")) v = v.substring(0, v.length() - 1);
+                    fields.add(v);
+                    if (c != ',') return fields.toArray(new String[0]);
+                    field.setLength(0);
+                    quoted = false;
+                    c = read();
+                    continue;
+                }
+                if (c != '\r' || !quoted) field.append((char) c);
+                c = read();
+            }
+        }
+    }
+
+    private static void report(String what, Table t, long rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%s %s: %d rows in %.1f s (%.0f rows/s)%n", what, t.name, rows, seconds, rows / Math.max(seconds, 1e-9));
+    }
+
+    public static class Table {
+        final String name;
+        final String orderBy;
+        final String[] columns;
+        final byte[] types;
+
+        Table(String name, String orderBy, String[] columns, byte[] types) {
+            this.name = name;
+            this.orderBy = orderBy;
+            this.columns = columns;
+            this.types = types;
+        }
+
+        int sqlType(int c) {
+            switch (types[c]) {
+                case INT:     return Types.INTEGER;
+                case DOUBLE:  return Types.DOUBLE;
+                case BOOLEAN: return Types.BOOLEAN;
+                default:      return Types.VARCHAR;
+            }
+        }
+    }
+}
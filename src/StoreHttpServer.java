@@ -0,0 +1,402 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A small HTTP/JSON front end to StoreService for web, mobile and scanner clients, on the JDK's built-in server.
+ * Every request runs on its own virtual thread (Java 21+; a fixed pool of platform threads on older JVMs), so a
+ * request waiting for the database or for its order's group commit costs almost nothing and thousands can be in
+ * flight at once; the connection pool's acquire timeout is what bounds the work actually sent to MySQL.
+ *
+ * Requests take query parameters or a form-encoded body; sessions are "Authorization: Bearer <token>".
+ *
+ *   POST /api/login           username, password       -> {"token", "userID", "fullName", "manager"}
+ *   POST /api/logout
+ *   GET  /api/products        after, limit             -> one keyset page, in ID order
+ *   GET  /api/products/{id}
+ *   GET  /api/products/search q, limit
+ *   POST /api/products        productID, name, price, quantity (signed in; only its seller or a manager may change an existing product, 403 otherwise)
+ *   POST /api/orders          items=productID:quantity,... (signed in; quantities > 0)  -> {"orderID", "total", "tax"}
+ *   GET  /api/orders/{id}     (signed in as its buyer or a manager)
+ *   GET  /api/reports/days    days                     -> revenue per day (managers only)
+ *   GET  /api/reports/products limit                   -> best-selling products (managers only)
+ *   GET  /api/reports/sellers limit                    -> sellers by revenue (managers only)
+ *   GET  /api/metrics         plain-text latency report (managers only)
+ */
+public class StoreHttpServer implements AutoCloseable {
+
+    private static final int MAX_PAGE = 500;
+    private static final int MAX_BODY = 64 * 1024;
+
+    private final StoreService store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public StoreHttpServer(StoreService store, int port, int platformThreads) throws IOException {
+        this.store = store;
+        // A deep accept backlog so connection bursts queue in the kernel instead of being refused
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        executor = AsyncDataService.createExecutor("http-worker", platformThreads);
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("HTTP API listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+            Map<String, String> params = params(exchange);
+
+            if (path[0].equals("login") && method.equals("POST")) {
+                login(exchange, params);
+            } else if (path[0].equals("logout") && method.equals("POST")) {
+                store.logout(token(exchange));
+                send(exchange, 204, null);
+            } else if (path[0].equals("products")) {
+                products(exchange, method, path, params);
+            } else if (path[0].equals("orders")) {
+                orders(exchange, method, path, params);
+            } else if (path[0].equals("reports") && method.equals("GET") && path.length == 2) {
+                reports(exchange, path[1], params);
+            } else if (path[0].equals("metrics") && method.equals("GET")) {
+                metrics(exchange);
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (StoreService.ForbiddenException ex) {
+            sendError(exchange, 403, ex.getMessage());
+        } catch (StoreService.RejectedException ex) {
+            sendError(exchange, 409, ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            sendError(exchange, 400, ex.getMessage());
+        } catch (AuthService.RateLimitedException ex) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf((ex.getRetryAfterMillis() + 999) / 1000));
+            sendError(exchange, 429, "Too many login attempts");
+        } catch (RuntimeException ex) {
+            System.out.println("HTTP request failed: " + exchange.getRequestMethod() + " " + exchange.getRequestURI());
+            ex.printStackTrace();
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void login(HttpExchange exchange, Map<String, String> params) throws IOException {
+        AuthService.Session session = store.login(required(params, "username"), required(params, "password"));
+        if (session == null) {
+            sendError(exchange, 401, "Wrong username or password!");
+            return;
+        }
+        User user = session.getUser();
+        StringBuilder json = new StringBuilder("{");
+        field(json, "token", session.getToken()).append(',');
+        json.append("\"userID\":").append(user.getUserID()).append(',');
+        field(json, "fullName", user.getFullName()).append(',');
+        json.append("\"manager\":").append(user.isManager()).append('}');
+        send(exchange, 200, json.toString());
+    }
+
+    private void products(HttpExchange exchange, String method, String[] path, Map<String, String> params) throws IOException {
+        if (method.equals("GET") && path.length == 1) {
+            int limit = limit(params, 50);
+            String after = params.get("after");
+            List<Product> page = after == null || after.isEmpty()
+                    ? store.listProducts(limit)
+                    : store.listProducts(intParam(params, "after", 0), limit);
+            if (page == null) {
+                sendError(exchange, 503, "Database access error!");
+                return;
+            }
+            StringBuilder json = new StringBuilder("[");
+            for (Product product : page) {
+                if (json.length() > 1) json.append(',');
+                product(json, product);
+            }
+            send(exchange, 200, json.append(']').toString());
+        } else if (method.equals("GET") && path.length == 2 && path[1].equals("search")) {
+            List<ProductSearchIndex.Result> results = store.searchProducts(required(params, "q"), limit(params, 10));
+            if (results == null) {
+                sendError(exchange, 503, "Search is not available yet");
+                return;
+            }
+            StringBuilder json = new StringBuilder("[");
+            for (ProductSearchIndex.Result result : results) {
+                if (json.length() > 1) json.append(',');
+                json.append("{\"productID\":").append(result.getProductID()).append(',');
+                field(json, "name", result.getName()).append('}');
+            }
+            send(exchange, 200, json.append(']').toString());
+        } else if (method.equals("GET") && path.length == 2) {
+            Product product = store.getProduct(parseInt(path[1], "product ID"));
+            if (product == null) {
+                sendError(exchange, 404, "This product ID does not exist in the database!");
+                return;
+            }
+            send(exchange, 200, product(new StringBuilder(), product).toString());
+        } else if (method.equals("POST") && path.length == 1) {
+            User user = requireUser(exchange);
+            if (user == null) return;
+            Product product = new Product();
+            product.setProductID(parseInt(required(params, "productID"), "product ID"));
+            product.setName(required(params, "name"));
+            product.setPrice(parseDouble(required(params, "price"), "price"));
+            product.setQuantity(parseDouble(required(params, "quantity"), "quantity"));
+            if (!store.saveProduct(product, user)) {
+                sendError(exchange, 503, "Failed to save product.");
+                return;
+            }
+            send(exchange, 200, product(new StringBuilder(), product).toString());
+        } else {
+            sendError(exchange, 405, "Method not allowed");
+        }
+    }
+
+    private void orders(HttpExchange exchange, String method, String[] path, Map<String, String> params) throws IOException {
+        User user = requireUser(exchange);
+        if (user == null) return;
+
+        if (method.equals("POST") && path.length == 1) {
+            Order order;
+            try {
+                order = store.placeOrder(items(required(params, "items")), user);
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                sendError(exchange, 503, "Failed to save order: " + cause.getMessage());
+                return;
+            }
+            send(exchange, 201, "{\"orderID\":" + order.getOrderID()
+                    + ",\"total\":" + Money.format(order.getTotalCostCents())
+                    + ",\"tax\":" + Money.format(order.getTotalTaxCents()) + "}");
+        } else if (method.equals("GET") && path.length == 2) {
+            Order order = store.getOrder(parseInt(path[1], "order ID"), user);
+            if (order == null) {
+                sendError(exchange, 404, "This order ID does not exist in the database!");
+                return;
+            }
+            StringBuilder json = new StringBuilder("{\"orderID\":").append(order.getOrderID());
+            json.append(",\"buyerID\":").append(order.getBuyerID());
+            json.append(",\"total\":").append(Money.format(order.getTotalCostCents()));
+            json.append(",\"tax\":").append(Money.format(order.getTotalTaxCents())).append(',');
+            field(json, "date", order.getDate()).append(",\"lines\":[");
+            OrderLines lines = order.getLineItems();
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) json.append(',');
+                json.append("{\"productID\":").append(lines.productID(i));
+                json.append(",\"quantity\":").append(lines.quantity(i));
+                json.append(",\"cost\":").append(Money.format(lines.costCents(i))).append('}');
+            }
+            send(exchange, 200, json.append("]}").toString());
+        } else {
+            sendError(exchange, 405, "Method not allowed");
+        }
+    }
+
+    // Latencies and counts of every operation say a lot about the store, so only managers see them
+    private void metrics(HttpExchange exchange) throws IOException {
+        User user = requireUser(exchange);
+        if (user == null) return;
+        if (!user.isManager()) {
+            sendError(exchange, 403, "Metrics are only available to managers.");
+            return;
+        }
+        sendText(exchange, 200, StoreMetrics.report());
+    }
+
+    private void reports(HttpExchange exchange, String report, Map<String, String> params) throws IOException {
+        User user = requireUser(exchange);
+        if (user == null) return;
+        SalesReports reports;
+        try {
+            reports = store.salesReports(user);
+        } catch (StoreService.RejectedException ex) {
+            sendError(exchange, user.isManager() ? 503 : 403, ex.getMessage());
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("[");
+        if (report.equals("days")) {
+            for (SalesReports.DayTotal day : store.revenueByDay(user, intParam(params, "days", 30))) {
+                if (json.length() > 1) json.append(',');
+                field(json.append('{'), "day", day.getDay().toString());
+                json.append(",\"orders\":").append(day.getOrders());
+                json.append(",\"revenue\":").append(Money.format(day.getRevenueCents()));
+                json.append(",\"tax\":").append(Money.format(day.getTaxCents())).append('}');
+            }
+        } else if (report.equals("products") || report.equals("sellers")) {
+            boolean products = report.equals("products");
+            List<SalesReports.Total> totals = products ? reports.topProducts(limit(params, 10)) : reports.topSellers(limit(params, 10));
+            for (SalesReports.Total total : totals) {
+                if (json.length() > 1) json.append(',');
+                json.append(products ? "{\"productID\":" : "{\"sellerID\":").append(total.getID());
+                json.append(",\"lines\":").append(total.getLines());
+                json.append(",\"units\":").append(total.getUnits());
+                json.append(",\"revenue\":").append(Money.format(total.getRevenueCents())).append('}');
+            }
+        } else {
+            sendError(exchange, 404, "Not found");
+            return;
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    // "12:2,15:1.5" -> {12=2.0, 15=1.5}; a product listed twice gets the sum. Every quantity must be positive
+    static Map<Integer, Double> items(String text) {
+        Map<Integer, Double> items = new LinkedHashMap<>();
+        for (String item : text.split(",")) {
+            int colon = item.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Items must be productID:quantity, got " + item);
+            double quantity = parseDouble(item.substring(colon + 1).trim(), "quantity");
+            if (quantity <= 0) throw new IllegalArgumentException("Quantity must be positive, got " + item.trim());
+            items.merge(parseInt(item.substring(0, colon).trim(), "product ID"), quantity, Double::sum);
+        }
+        return items;
+    }
+
+    private User requireUser(HttpExchange exchange) throws IOException {
+        User user = store.authenticate(token(exchange));
+        if (user == null) sendError(exchange, 401, "Please log in");
+        return user;
+    }
+
+    private static String token(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        return header.substring(7).trim();
+    }
+
+    // Query string and form-encoded body together; body values win
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY + 1);
+            if (body.length > MAX_BODY) throw new IllegalArgumentException("Request body is too large");
+            if (body.length > 0) parseForm(new String(body, StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) throw new IllegalArgumentException("Missing parameter: " + name);
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        return value == null || value.isEmpty() ? defaultValue : parseInt(value, name);
+    }
+
+    private static int limit(Map<String, String> params, int defaultValue) {
+        return Math.max(1, Math.min(MAX_PAGE, intParam(params, "limit", defaultValue)));
+    }
+
+    private static int parseInt(String value, String what) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid " + what + ": " + value);
+        }
+    }
+
+    private static double parseDouble(String value, String what) {
+        try {
+            double d = Double.parseDouble(value);
+            if (Double.isNaN(d) || Double.isInfinite(d)) throw new NumberFormatException();
+            return d;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid " + what + ": " + value);
+        }
+    }
+
+    private static StringBuilder product(StringBuilder json, Product product) {
+        json.append("{\"productID\":").append(product.getProductID()).append(',');
+        field(json, "name", product.getName());
+        json.append(",\"price\":").append(Money.format(Money.cents(product.getPrice())));
+        json.append(",\"quantity\":").append(product.getQuantity());
+        json.append(",\"sellerID\":").append(product.getSellerID());
+        return json.append('}');
+    }
+
+    private static StringBuilder field(StringBuilder json, String name, String value) {
+        json.append('"').append(name).append("\":");
+        if (value == null) return json.append("null");
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, field(new StringBuilder("{"), "error", message).append('}').toString());
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        write(exchange, status, text);
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        write(exchange, status, json);
+    }
+
+    private static void write(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
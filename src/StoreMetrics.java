@@ -0,0 +1,71 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The application's operation metrics. Each instrumented call site records into one of these constants.
+ */
+public final class StoreMetrics {
+
+    private static final List<OperationMetrics> ALL = new ArrayList<>();
+
+    public static final OperationMetrics LOAD_PRODUCT = register("loadProduct");
+    public static final OperationMetrics SAVE_PRODUCT = register("saveProduct");
+    public static final OperationMetrics LOAD_ORDER = register("loadOrder");
+    public static final OperationMetrics SAVE_ORDER = register("saveOrder");
+    public static final OperationMetrics LOAD_USER = register("loadUser");
+
+    // Time from asking the pool for a connection until holding one; failures are acquire timeouts
+    public static final OperationMetrics POOL_WAIT = register("poolWait");
+    // From the first statement of an order transaction to its commit or rollback, single and group-commit writes
+    public static final OperationMetrics ORDER_TRANSACTION = register("orderTransaction");
+
+    private StoreMetrics() {
+    }
+
+    private static OperationMetrics register(String name) {
+        OperationMetrics metrics = new OperationMetrics(name);
+        ALL.add(metrics);
+        return metrics;
+    }
+
+    public static List<OperationMetrics> all() {
+        return Collections.unmodifiableList(ALL);
+    }
+
+    /**
+     * Publishes every operation as storeapp:type=Operation,name=... on the platform MBean server, for jconsole
+     * or any JMX collector. Calling it again is harmless.
+     */
+    public static synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics metrics : ALL) {
+            try {
+                ObjectName name = new ObjectName("storeapp:type=Operation,name=" + metrics.getName());
+                if (!server.isRegistered(name)) server.registerMBean(metrics, name);
+            } catch (JMException ex) {
+                System.out.println("Could not register metrics for " + metrics.getName() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    // One line per operation, cumulative since start
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        for (OperationMetrics metrics : ALL) {
+            appendLine(sb, metrics.getName(), metrics.snapshot(), metrics.getErrors());
+        }
+        return sb.toString();
+    }
+
+    static void appendLine(StringBuilder sb, String name, LatencyHistogram.Snapshot s, long errors) {
+        sb.append(String.format("%-17s count=%d errors=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus%n",
+                name, s.getCount(), errors, s.getMeanNanos() / 1000.0,
+                s.getValueAtQuantile(0.5) / 1000.0, s.getValueAtQuantile(0.99) / 1000.0,
+                s.getValueAtQuantile(0.999) / 1000.0, s.getMaxNanos() / 1000.0));
+    }
+}
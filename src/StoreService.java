@@ -0,0 +1,212 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The store's login, catalog and order flows without any user interface, shared by the Swing controllers and
+ * StoreHttpServer. Methods block on the database and may be called from many threads at once; the controllers
+ * call them through AsyncDataService so the event dispatch thread never waits.
+ * An Order being built is not thread-safe: only one call at a time may work on the same order.
+ */
+public class StoreService {
+
+    // A request the store refused for a business reason (unknown product, not enough stock); the message is for users
+    public static class RejectedException extends RuntimeException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    // A request refused because the user may not do it at all, like editing somebody else's product
+    public static class ForbiddenException extends RejectedException {
+        public ForbiddenException(String message) {
+            super(message);
+        }
+    }
+
+    private final DataAdapter dataAdapter;
+    private final AuthService authService;
+    private final StockReservationService reservations;
+    private final GroupCommitOrderWriter orderWriter;
+    private final OrderPricer pricer;
+    private final SalesReports reports;
+    private final OrderJournal journal;
+
+    public StoreService(DataAdapter dataAdapter, AuthService authService, StockReservationService reservations,
+                        GroupCommitOrderWriter orderWriter, OrderPricer pricer, SalesReports reports,
+                        OrderJournal journal) {
+        this.dataAdapter = dataAdapter;
+        this.authService = authService;
+        this.reservations = reservations;
+        this.orderWriter = orderWriter;
+        this.pricer = pricer;
+        this.reports = reports;
+        this.journal = journal;
+    }
+
+    // Returns null for a wrong username or password; throws AuthService.RateLimitedException after too many attempts
+    public AuthService.Session login(String username, String password) {
+        return authService.login(username, password);
+    }
+
+    // The signed-in user for a session token, or null if it is unknown or expired
+    public User authenticate(String token) {
+        return token == null ? null : authService.validateToken(token);
+    }
+
+    public void logout(String token) {
+        authService.logout(token);
+    }
+
+    public Product getProduct(int productID) {
+        return dataAdapter.loadProduct(productID);
+    }
+
+    // One keyset page of the catalog in ID order, or null on a database error
+    public List<Product> listProducts(int afterProductID, int limit) {
+        return dataAdapter.loadProductPage(afterProductID, limit);
+    }
+
+    // The first page of the catalog
+    public List<Product> listProducts(int limit) {
+        return dataAdapter.loadProductPage(limit);
+    }
+
+    // Name search, or null if there is no index; while the index is still being built results may be incomplete
+    public List<ProductSearchIndex.Result> searchProducts(String query, int limit) {
+        ProductSearchIndex index = dataAdapter.getSearchIndex();
+        return index == null ? null : index.search(query, limit);
+    }
+
+    /**
+     * Checks a product before it is saved. Returns the message to show the user, or null if it is fine.
+     */
+    public static String validateProduct(Product product) {
+        if (product.getProductID() < 0) return "Invalid product ID! Please provide a valid product ID!";
+        if (!(product.getPrice() >= 0)) return "Invalid product price! Please provide a valid product price!";
+        if (!(product.getQuantity() >= 0)) return "Invalid product quantity! Please provide a valid product quantity!";
+        String name = product.getName() == null ? "" : product.getName().trim();
+        if (name.replaceAll(" ", "").length() == 0) return "Invalid product name! Please provide a non-empty product name!";
+        if (name.length() > 255) return "Invalid product name! Please provide a product name less than 255 characters!";
+        return null;
+    }
+
+    /**
+     * Saves the product; a new product gets seller as its seller. An existing product may only be changed by its
+     * own seller or by a manager, and keeps its seller either way. Throws RejectedException if it does not
+     * validate and ForbiddenException if seller may not change it.
+     */
+    public boolean saveProduct(Product product, User seller) {
+        String problem = validateProduct(product);
+        if (problem != null) throw new RejectedException(problem);
+        product.setName(product.getName().trim());
+        try {
+            return dataAdapter.saveProduct(product, seller);
+        } catch (DataAdapter.NotProductOwnerException ex) {
+            throw new ForbiddenException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Holds quantity of the product for the order and adds it, merging with a line for the same product.
+     * Returns a copy of the product's line; throws RejectedException if the stock cannot be held.
+     */
+    public OrderLine addToOrder(Order order, Product product, double quantity) {
+        if (!(quantity >= 0) || !reservations.reserve(order, product.getProductID(), quantity)) {
+            throw new RejectedException("This quantity is not valid!");
+        }
+        return pricer.addLine(order, product.getProductID(), product.getPrice(), quantity);
+    }
+
+    // Takes the product out of the order and frees its stock; returns the removed line or null
+    public OrderLine removeFromOrder(Order order, int productID) {
+        OrderLine removed = pricer.removeLine(order, productID);
+        if (removed != null) reservations.release(order, productID);
+        return removed;
+    }
+
+    // Gives back the stock an order that will not be placed is holding
+    public void cancelOrder(Order order) {
+        reservations.release(order);
+    }
+
+    // The order with its lines, or null if it does not exist or belongs to someone else and viewer is not a manager
+    public Order getOrder(int orderID, User viewer) {
+        Order order = dataAdapter.loadOrder(orderID);
+        if (order == null || viewer == null) return null;
+        return viewer.isManager() || order.getBuyerID() == viewer.getUserID() ? order : null;
+    }
+
+    /**
+     * Writes the order for buyer (who may be null) through the group-commit writer. The future completes with the
+     * order's ID; on failure the stock levels it touched are re-read next time, and its holds stay until they expire.
+     */
+    public CompletableFuture<Integer> placeOrder(Order order, User buyer) {
+        if (order.getLineItems().isEmpty()) throw new RejectedException("No items in the order.");
+        if (buyer != null) order.setBuyerID(buyer.getUserID());
+        order.setDate(LocalDateTime.now().toString());
+        return orderWriter.submit(order).whenComplete((orderID, ex) -> {
+            if (ex == null) {
+                reservations.commit(order, order.getLineItems());
+            } else {
+                OrderLines lines = order.getLineItems();
+                for (int i = 0; i < lines.size(); i++) reservations.invalidate(lines.productID(i));
+            }
+        });
+    }
+
+    /**
+     * Records the order for buyer (who may be null) as a sale in the local order journal, without waiting for the
+     * database. The future completes with the sale's key once it is on disk; the order reaches the database in the
+     * background and gets its ID there, even if the database is down right now.
+     */
+    public CompletableFuture<String> checkout(Order order, User buyer) {
+        if (order.getLineItems().isEmpty()) throw new RejectedException("No items in the order.");
+        if (buyer != null) order.setBuyerID(buyer.getUserID());
+        order.setDate(LocalDateTime.now().toString());
+        return journal.append(order).whenComplete((saleKey, ex) -> {
+            if (ex == null) reservations.commit(order, order.getLineItems());
+        });
+    }
+
+    // Sales reports are for managers only; throws RejectedException for anybody else or while they are still loading
+    public SalesReports salesReports(User viewer) {
+        if (viewer == null || !viewer.isManager()) throw new RejectedException("Sales reports are only available to managers.");
+        if (reports == null || !reports.isReady()) throw new RejectedException("Sales reports are still loading.");
+        return reports;
+    }
+
+    // Revenue per day for the last days days, today included
+    public List<SalesReports.DayTotal> revenueByDay(User viewer, int days) {
+        LocalDate today = LocalDate.now();
+        return salesReports(viewer).revenueByDay(today.minusDays(Math.max(1, days) - 1), today);
+    }
+
+    /**
+     * Builds, prices and places a whole basket (productID to quantity) in one call and waits for it to commit.
+     * Nothing is held if any line is refused. Throws RejectedException for an unknown product or missing stock,
+     * or CompletionException if the write failed.
+     */
+    public Order placeOrder(Map<Integer, Double> quantities, User buyer) {
+        Order order = new Order();
+        try {
+            for (Map.Entry<Integer, Double> e : quantities.entrySet()) {
+                Product product = dataAdapter.loadProduct(e.getKey());
+                if (product == null) throw new RejectedException("Product " + e.getKey() + " does not exist!");
+                try {
+                    addToOrder(order, product, e.getValue());
+                } catch (RejectedException ex) {
+                    throw new RejectedException("Not enough stock for product " + e.getKey() + "!");
+                }
+            }
+            placeOrder(order, buyer).join();
+            return order;
+        } catch (RejectedException | CompletionException ex) {
+            reservations.release(order);
+            throw ex;
+        }
+    }
+}
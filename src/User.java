@@ -37,4 +37,12 @@ public class User {
         this.password = password;
     }
 
+    public boolean isManager() {
+        return isManager;
+    }
+
+    public void setManager(boolean isManager) {
+        this.isManager = isManager;
+    }
+
 }
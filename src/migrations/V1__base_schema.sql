@@ -1,13 +1,7 @@
-SET FOREIGN_KEY_CHECKS = 0;
+-- Base schema. Safe to run against a database that was created by the old createTable.sql:
+-- nothing is dropped and the default manager is only added when missing.
 
-DROP TABLE IF EXISTS orderLine;
-DROP TABLE IF EXISTS orders;
-DROP TABLE IF EXISTS products;
-DROP TABLE IF EXISTS users;
-
-SET FOREIGN_KEY_CHECKS = 1;
-
-CREATE TABLE users (
+CREATE TABLE IF NOT EXISTS users (
     userID INT PRIMARY KEY AUTO_INCREMENT,
     username VARCHAR(50) NOT NULL UNIQUE,
     userPassword VARCHAR(255) NOT NULL,
@@ -15,7 +9,7 @@ CREATE TABLE users (
     isManager BOOLEAN DEFAULT FALSE
 );
 
-CREATE TABLE products (
+CREATE TABLE IF NOT EXISTS products (
     productID INT PRIMARY KEY AUTO_INCREMENT,
     productName VARCHAR(100) NOT NULL,
     price DECIMAL(10, 2) NOT NULL,
@@ -24,7 +18,7 @@ CREATE TABLE products (
     FOREIGN KEY (sellerID) REFERENCES users(userID)
 );
 
-CREATE TABLE orders (
+CREATE TABLE IF NOT EXISTS orders (
     orderID INT PRIMARY KEY AUTO_INCREMENT,
     buyerID INT,
     totalCost DECIMAL(10, 2) NOT NULL,
@@ -33,7 +27,7 @@ CREATE TABLE orders (
     FOREIGN KEY (buyerID) REFERENCES users(userID)
 );
 
-CREATE TABLE orderLine (
+CREATE TABLE IF NOT EXISTS orderLine (
     orderID INT,
     productID INT,
     quantity DOUBLE NOT NULL,
@@ -44,4 +38,4 @@ CREATE TABLE orderLine (
 );
 
 -- Insert a default manager user
-INSERT INTO users (username, userPassword, fullName, isManager) VALUES ('manager', 'manager', 'global manager', TRUE);
\ No newline at end of file
+INSERT IGNORE INTO users (username, userPassword, fullName, isManager) VALUES ('manager', 'manager', 'global manager', TRUE);
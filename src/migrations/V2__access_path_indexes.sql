@@ -0,0 +1,10 @@
+-- Secondary indexes for the queries the application actually runs.
+-- InnoDB already keeps an implicit index for every foreign key column; these replace them with
+-- composite indexes that also cover the sort/filter column of each access path.
+-- The orders indexes come with the DATETIME conversion in V3.
+
+-- Per-seller catalog, in productID order for keyset paging
+CREATE INDEX idx_products_seller ON products (sellerID, productID);
+
+-- Which orders contain a product (sales per product, stock audits)
+CREATE INDEX idx_orderline_product ON orderLine (productID, orderID);
@@ -0,0 +1,26 @@
+-- orders.date held LocalDateTime.toString() text (e.g. 2024-05-01T12:34:56.123456789).
+-- Convert it to an indexed DATETIME(3) so date-range reports can use an index range scan.
+
+ALTER TABLE orders ADD COLUMN orderDate DATETIME(3) NULL;
+
+-- MySQL accepts the ISO 'T' separator; keep at most millisecond precision
+UPDATE orders
+   SET orderDate = CAST(LEFT(REPLACE(date, 'T', ' '), 23) AS DATETIME(3))
+ WHERE date REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}';
+
+-- Text that did not convert would be lost with the old column; keep it, keyed by order, for a manual fix
+CREATE TABLE IF NOT EXISTS orders_unconverted_date (
+    orderID INT PRIMARY KEY,
+    date VARCHAR(255) NOT NULL
+);
+
+INSERT INTO orders_unconverted_date (orderID, date)
+SELECT orderID, date FROM orders WHERE date IS NOT NULL AND orderDate IS NULL;
+
+ALTER TABLE orders DROP COLUMN date, CHANGE COLUMN orderDate date DATETIME(3) NULL;
+
+-- Per-buyer order history, newest first
+CREATE INDEX idx_orders_buyer_date ON orders (buyerID, date);
+
+-- Date-range reports
+CREATE INDEX idx_orders_date ON orders (date);
@@ -0,0 +1,9 @@
+-- Sales that terminals journaled locally (OrderJournal) and replayed into the database.
+-- A sale's key is recorded in the same transaction as its order, so replaying it again is a no-op.
+
+CREATE TABLE IF NOT EXISTS orderJournalApplied (
+    saleKey CHAR(36) NOT NULL PRIMARY KEY,
+    orderID INT NOT NULL,
+    appliedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    FOREIGN KEY (orderID) REFERENCES orders(orderID)
+);